@@ -24,6 +24,9 @@ public class ACO {
     private static final double MAX_PERCENT_OF_OPT = 1;
     private static final double NUM_RUNS = 3;
 
+    //master seed of the sweep; every run's seed is derived from it
+    private static final long SWEEP_SEED = System.nanoTime();
+
     //For EAS
     private static double elitism;
 
@@ -100,27 +103,28 @@ public class ACO {
         }
 
         System.out.printf("\n\n\n\nOpt tour length is: " + optLen + "\n");
-        System.out.printf("Number of cities is: " + numCities + "\n\n");
+        System.out.printf("Number of cities is: " + numCities + "\n");
+        System.out.printf("Sweep seed is: " + SWEEP_SEED + "\n\n");
+
+        //every run of every configuration is queued up first, then the whole
+        //sweep runs side by side and is printed in the usual order
+        List<SweepJob> jobs = new ArrayList<SweepJob>();
+        List<String> headings = new ArrayList<String>();
         
         //for all "rule of thumb" values
-        System.out.printf("Base case for ACS\n");
-            ACO acsB = new ACO(STAND_NUM_ANTS, NUM_ITER, STAND_ALPHA, STAND_BETA,
-                    STAND_RHO, Q_FINAL, EPSILON, optLen, MAX_PERCENT_OF_OPT, file);
-
-        System.out.printf("\nBase case for EAS\n");
-            ACO easB = new ACO(STAND_NUM_ANTS, NUM_ITER, STAND_ALPHA, STAND_BETA,
-                    STAND_RHO, STAND_ELITISM, file, optLen, MAX_PERCENT_OF_OPT);
+        addAcsRuns(jobs, headings, "Base case for ACS\n", STAND_ALPHA, STAND_BETA, STAND_RHO);
+        addEasRuns(jobs, headings, "\nBase case for EAS\n", STAND_ALPHA, STAND_BETA, STAND_RHO);
 
         
             
             //testing for different values of rho
-            System.out.printf("\nRHO TESTS\n");
+            String heading = "\nRHO TESTS\n";
             for (int r = 5; r < 36; r += 15){
                 double rho = r * 0.01;               
             
             //testing different values of alpha and beta
             //have to do this first since for loops need ints
-            System.out.printf("\n\nALPHA and BETA TESTS and RHO TESTS\n");
+            heading += "\n\nALPHA and BETA TESTS and RHO TESTS\n";
             for(int a = 5; a < 16; a += 5){
                 double alpha = a * 0.1;
                 
@@ -132,21 +136,93 @@ public class ACO {
                         continue;
                     }
                     
-                    System.out.printf("\nAlpha equals: ," + alpha + "\n");
-                    System.out.printf("Beta equals: ," + beta + "\n");
-                    System.out.printf("\nRho equals: ," + rho + "\n");
+                    heading += "\nAlpha equals: ," + alpha + "\n";
+                    heading += "Beta equals: ," + beta + "\n";
+                    heading += "\nRho equals: ," + rho + "\n";
                     
-                    System.out.printf("\nACS:\n");
-                    ACO acs1 = new ACO(STAND_NUM_ANTS, NUM_ITER, alpha, beta,
-                        rho, Q_FINAL, EPSILON, optLen, MAX_PERCENT_OF_OPT, file);
-                    System.out.printf("\nEAS:\n");
-                    ACO eas1 = new ACO(STAND_NUM_ANTS, NUM_ITER, alpha, beta,
-                        rho, STAND_ELITISM, file, optLen, MAX_PERCENT_OF_OPT);
+                    addAcsRuns(jobs, headings, heading + "\nACS:\n", alpha, beta, rho);
+                    addEasRuns(jobs, headings, "\nEAS:\n", alpha, beta, rho);
+                    heading = "";
                     
                 }
             }
             
             } 
+
+        List<SweepResult> results = new SweepScheduler().run(jobs);
+        printResults(headings, results);
+        }
+    }
+
+    //queues NUM_RUNS ACS runs of one configuration, printed under heading
+    private static void addAcsRuns(List<SweepJob> jobs, List<String> headings, String heading,
+            double alpha, double beta, double rho) {
+        int configuration = headings.size();
+        headings.add(heading);
+        for (int run = 0; run < NUM_RUNS; run++) {
+            jobs.add(SweepJob.acs(file, STAND_NUM_ANTS, NUM_ITER, alpha, beta, rho, Q_FINAL, EPSILON,
+                    optLen, MAX_PERCENT_OF_OPT, configuration, run, runSeed(configuration, run)));
+        }
+    }
+
+    //queues NUM_RUNS EAS runs of one configuration, printed under heading
+    private static void addEasRuns(List<SweepJob> jobs, List<String> headings, String heading,
+            double alpha, double beta, double rho) {
+        int configuration = headings.size();
+        headings.add(heading);
+        for (int run = 0; run < NUM_RUNS; run++) {
+            jobs.add(SweepJob.eas(file, STAND_NUM_ANTS, NUM_ITER, alpha, beta, rho, STAND_ELITISM,
+                    optLen, MAX_PERCENT_OF_OPT, configuration, run, runSeed(configuration, run)));
+        }
+    }
+
+    //seed of one run of the sweep
+    private static long runSeed(int configuration, int run) {
+        return RandomSource.seedFor(SWEEP_SEED, configuration, run);
+    }
+
+    //prints the runs of every configuration in the same layout the ACO
+    //constructors use, plus the CPU time each run actually got
+    private static void printResults(List<String> headings, List<SweepResult> results) {
+        List<List<SweepResult>> byConfiguration = new ArrayList<List<SweepResult>>();
+        for (int i = 0; i < headings.size(); i++) {
+            byConfiguration.add(new ArrayList<SweepResult>());
+        }
+        for (SweepResult result : results) {
+            byConfiguration.get(result.getJob().getConfiguration()).add(result);
+        }
+
+        for (int i = 0; i < headings.size(); i++) {
+            System.out.printf(headings.get(i));
+
+            double totTime = 0;
+            double totCpu = 0;
+            double totLen = 0;
+            int finished = 0;
+            for (SweepResult result : byConfiguration.get(i)) {
+                if (!result.isOk()) {
+                    System.out.print("Run " + (result.getJob().getRun() + 1) + ": , failed: "
+                            + result.getError() + "\n");
+                    continue;
+                }
+                System.out.print("Run " + (result.getJob().getRun() + 1) + ": , ");
+                System.out.print(result.getBestTourLength() + ", ");
+                System.out.printf("\n");
+
+                totTime += result.getWallSeconds();
+                totCpu += result.getCpuSeconds();
+                totLen += result.getBestTourLength();
+                finished++;
+            }
+            double avgTime = (totTime/finished);
+            double avgCpu = (totCpu/finished);
+            double avgLen = totLen/finished;
+            double tourRatio = avgLen/optLen;
+
+            System.out.printf("Average time: , " + avgTime + ", ");
+            System.out.printf("Average length: , " + avgLen + ", ");
+            System.out.printf("Tour Ratio: , " + tourRatio + ", ");
+            System.out.printf("Average CPU time: , " + avgCpu + "\n");
         }
     }
 
@@ -7,12 +7,13 @@ package aco;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  *
  * @author PryhuberA
  */
-public class ACS {
+public class ACS implements Solver {
 
     private final int numAnts;
     private final int numIter;
@@ -24,19 +25,81 @@ public class ACS {
     private final double percentOfOpt;
     private final double optLength;
 
-    private Edge[] bestTour;
+    //cities of the best tour so far, copied in whenever an ant beats it
+    private final int[] bestTour;
     private double bestTourLength = Double.MAX_VALUE;
-    private int numCities;
+    private final int numCities;
     private AntACS[] ants;
-    private City[] cities;
-    private static Edge[][] edgeMatrix;
+    private final Problem problem;
+    private final City[] cities;
+    private final DistanceMatrix distances;
+    private PheromoneMatrix pheromone;
+    private final CandidateLists candidates;
+    private ChoiceInfo choiceInfo;
+    private final ColonyOptions options;
+    private ExecutorService workers;
+    private boolean ownsWorkers;
+    private boolean workersStarted;
+    //one improver per ant (or one for the iteration's best), null if off
+    private LocalSearch[] localSearch;
+    private long seed;
+    private int iteration;
     private double t0;
+    private long startTime;
+    private boolean clockStarted;
+    private boolean stopped;
+    //snapshot file, if any, and the solving time a resumed run had already spent
+    private Checkpoint checkpoint;
+    private long resumedNanos;
+    //hands iteration events to the listeners in the options, null if there are none
+    private IterationDispatcher dispatcher;
+    //Flight Recorder events of each phase and iteration
+    private final PhaseProfiler profiler = new PhaseProfiler("ACS");
+    //live numbers for JMX and the metrics server, null if neither is wanted
+    private ColonyMetrics metrics;
+    //when to stop, why the colony stopped (null while it runs), and the
+    //branching factor if the stagnation check needs it
+    private final Termination termination;
+    private Termination.Reason stopReason;
+    private BranchingFactor branching;
+
+    //throughput counters for comparing the walking modes
+    private long antSteps;
+    private long constructionNanos;
+    private int iterationsRun;
 
     
     //constructor for ACS
     ACS(int numAnts, int numIter, double alpha, double beta, double rho,
             double q0, double epsilon, double optLength, double percentage, String file) {
+        this(numAnts, numIter, alpha, beta, rho, q0, epsilon, optLength, percentage, file,
+                new ColonyOptions());
+    }
+
+    //constructor for ACS with non-default colony options
+    ACS(int numAnts, int numIter, double alpha, double beta, double rho,
+            double q0, double epsilon, double optLength, double percentage, String file,
+            ColonyOptions options) {
+
+        //housekeeping to read in initial file and create the edge matrix for all cities
+        this(Problem.load(file, options), numAnts, numIter, alpha, beta, rho, q0, epsilon, optLength,
+                percentage, options);
+
+        solve();
 
+    }
+
+    //creates a colony on a problem that other colonies may share, without
+    //running it; call solve() or step()
+    public ACS(Problem problem, int numAnts, int numIter, double alpha, double beta, double rho,
+            double q0, double epsilon, double optLength, double percentage, ColonyOptions options) {
+
+        this.problem = problem;
+        this.numCities = problem.getNumCities();
+        this.cities = problem.getCities();
+        this.distances = problem.getDistances();
+        this.candidates = problem.getCandidates();
+        this.bestTour = new int[numCities + 1];
         this.numAnts = numAnts;
         this.numIter = numIter;
         //the degree of influence of the pheromone component
@@ -51,178 +114,465 @@ public class ACS {
         this.wearFactor = epsilon;
         this.percentOfOpt = percentage;
         this.optLength = optLength;
+        this.options = options;
+        this.seed = options.pickSeed();
 
-        //housekeeping to read in initial file and create the edge matrix for all cities
-        readFile(file);
-
+        //this colony's own pheromone
         createEdges();
-        
-        //timer 
-        long startTime = System.nanoTime();
-        for (int iter = 0; iter < numIter; iter++) {
-            
-            //create a new set of ants ("the colony") on every iteration
-            generateAnts();
-
-            //progressively add edges and wear away pheromone after each ant has
-            //simultaneously added this edge (for all but last edge)
-            for (int edge = 0; edge < numCities - 1; edge++) {
+        createLocalSearch();
+        openCheckpoint();
+        if (!options.getIterationListeners().isEmpty()) {
+            dispatcher = new IterationDispatcher(options.getIterationListeners(), "ACS-listeners");
+        }
+        termination = new Termination(options, numIter, optLength, percentOfOpt);
+        if (Termination.needsBranchingFactor(options)) {
+            branching = new BranchingFactor(pheromone, candidates, options.getBranchingLambda());
+        }
+        if (ColonyMetrics.isWanted(options)) {
+            metrics = new ColonyMetrics("ACS", seed, optLength, options);
+        }
 
-                //goes through ant by ant, updating one edge to ant's tour
-                for (int antIndex = 0; antIndex < numAnts; antIndex++) {
-                    ants[antIndex].addEdge();
-                }
+    }
+
+    //runs iterations until we hit numIter, the target length, or the time limit
+    @Override
+    public double solve() {
+        try {
+            while (step()) {
+                //keep going
+            }
+        } finally {
+            close();
+        }
+        return bestTourLength;
+    }
 
-                //removes pheromone on edges ants have now walked across
-                removePheroOnTheGo();
+    //runs one iteration of the colony
+    @Override
+    public boolean step() {
+        if (stopped || iterationsRun >= numIter) {
+            if (stopReason == null) {
+                stopReason = Termination.Reason.ITERATIONS;
             }
+            stopped = true;
+            return false;
+        }
 
-            //makes sure ants go home (they're still drunk)
-            for (int antIndex = 0; antIndex < numAnts; antIndex++) {
-                ants[antIndex].finalEdge();
+        //timer starts with the first iteration, counting the time a resumed
+        //run had already spent
+        if (!clockStarted) {
+            startTime = System.nanoTime() - resumedNanos;
+            clockStarted = true;
+            termination.start(iterationsRun);
+        }
+        long cpuMark = termination.cpuMark();
+        iteration = iterationsRun;
+        profiler.startIteration(iteration);
+
+        //the first step picks the pool ants walk on, if any
+        if (!workersStarted) {
+            startWorkers();
+        }
+        if (metrics != null) {
+            metrics.register();
+        }
+
+        //create a new set of ants ("the colony") on every iteration
+        profiler.begin(PhaseProfiler.Phase.GENERATE_ANTS);
+        generateAnts();
+        profiler.end(PhaseProfiler.Phase.GENERATE_ANTS);
+
+        //every ant builds a whole tour, wearing pheromone as it goes
+        long walkStart = System.nanoTime();
+        profiler.begin(PhaseProfiler.Phase.WALK_ANTS);
+        walkAnts();
+        profiler.end(PhaseProfiler.Phase.WALK_ANTS);
+        long walkNanos = System.nanoTime() - walkStart;
+        constructionNanos += walkNanos;
+        antSteps += (long) numAnts * numCities;
+
+        //polish the new tours before they are judged
+        long searchStart = System.nanoTime();
+        improveTours();
+        long searchNanos = System.nanoTime() - searchStart;
+
+        //updates best tour
+        long updateStart = System.nanoTime();
+        double previousBest = bestTourLength;
+        double iterationBest = Double.MAX_VALUE;
+        for (int i = 0; i < numAnts; i++) {
+            iterationBest = Math.min(iterationBest, ants[i].getTourLength());
+            if (ants[i].getTourLength() < bestTourLength) {
+                bestTourLength = ants[i].getTourLength();
+                System.arraycopy(ants[i].getCityTour(), 0, bestTour, 0, numCities + 1);
             }
+        }
 
-            //removes pheromone on final edge 
-            removePheroOnTheGo();
+        //evaporates pheromone levels on each edge
+        profiler.begin(PhaseProfiler.Phase.EVAP_PHEROMONE);
+        evapPheromone();
+        profiler.end(PhaseProfiler.Phase.EVAP_PHEROMONE);
+
+        //adds pheromone to edges on path of the best tour so far
+        profiler.begin(PhaseProfiler.Phase.LAY_DOWN_PHERO);
+        for (int edge = 0; edge < numCities; edge++) {
+            int source = bestTour[edge];
+            int dest = bestTour[edge + 1];
+
+            pheromone.deposit(source, dest, depositFor(source, dest));
+            if (branching != null) {
+                branching.changed(source, dest);
+            }
+
+        }
+        profiler.end(PhaseProfiler.Phase.LAY_DOWN_PHERO);
+
+        //the deposit changed the cached weights of the best tour's edges
+        profiler.begin(PhaseProfiler.Phase.CHOICE_INFO);
+        choiceInfo.update();
+        profiler.end(PhaseProfiler.Phase.CHOICE_INFO);
+        long updateNanos = System.nanoTime() - updateStart;
+
+        iterationsRun++;
+
+        //stop at the iteration limit, near enough the optimum or the target,
+        //out of time, or once the colony has stagnated
+        long timeElapsed = System.nanoTime() - startTime;
+        termination.charge(cpuMark);
+        stopReason = termination.check(iterationsRun, bestTourLength, timeElapsed, branching);
+        if (stopReason != null) {
+            stopped = true;
+        }
+
+        saveCheckpoint();
 
-            //updates best tour 
+        long fallbacks = 0;
+        if (profiler.isCountingThroughput()) {
             for (int i = 0; i < numAnts; i++) {
-                if (ants[i].getTourLength() < bestTourLength) {
-                    bestTourLength = ants[i].getTourLength();
-                    bestTour = ants[i].getTour();
-                }
+                fallbacks += ants[i].getFallbacks();
             }
+        }
+        profiler.throughput((long) numAnts * numCities, walkNanos, fallbacks);
+        profiler.endIteration(bestTourLength, iterationBest, previousBest, timeElapsed);
+        if (metrics != null) {
+            metrics.update(seed, iterationsRun, bestTourLength, iterationBest, timeElapsed,
+                    pheromone.getFootprint(), choiceInfo.getFootprint());
+        }
 
-            //evaporates pheromone levels on each edge
-            evapPheromone();
+        if (dispatcher != null) {
+            //the tour is only copied when it changed
+            dispatcher.publish(new IterationEvent("ACS", seed, iterationsRun, bestTourLength, iterationBest,
+                    previousBest, timeElapsed, walkNanos, searchNanos, updateNanos, stopped,
+                    bestTourLength < previousBest ? bestTour.clone() : null));
+        }
 
-            //adds pheromone to edges on path of the best tour so far
-            for (int tour = 0; tour < bestTour.length; tour++) {
-                int source = bestTour[tour].getSource();
-                int dest = bestTour[tour].getDest();
+        return !stopped;
 
-                double length = bestTour[tour].getLength();
+    }
 
-                edgeMatrix[source][dest].addPheromone(evapFactor / length);
-                edgeMatrix[dest][source].addPheromone(evapFactor / length);
+    //runs the local search on every ant's tour, or only on this iteration's best
+    private void improveTours() {
+        if (localSearch == null) {
+            return;
+        }
+        profiler.begin(PhaseProfiler.Phase.LOCAL_SEARCH);
+        if (!options.isLocalSearchAllAnts()) {
+            int best = 0;
+            for (int i = 1; i < numAnts; i++) {
+                if (ants[i].getTourLength() < ants[best].getTourLength()) {
+                    best = i;
+                }
+            }
+            ants[best].improveTour(localSearch[0]);
+        } else if (workers == null) {
+            improveTours(0, numAnts);
+        } else {
+            runOnWorkers(this::improveTours);
+        }
+        profiler.end(PhaseProfiler.Phase.LOCAL_SEARCH);
+    }
 
+    //runs the local search on the tours of ants firstAnt to lastAnt (exclusive)
+    private void improveTours(int firstAnt, int lastAnt) {
+        for (int antIndex = firstAnt; antIndex < lastAnt; antIndex++) {
+            ants[antIndex].improveTour(localSearch[antIndex]);
+        }
+    }
+
+    //builds the tour of every ant in the colony for one iteration
+    private void walkAnts() {
+        if (options.getAcsMode() == ColonyOptions.AcsMode.ASYNC) {
+            if (workers == null) {
+                walkAntsAsync(0, numAnts);
+            } else {
+                runOnWorkers(this::walkAntsAsync);
             }
+        } else if (workers == null) {
+            walkAntsSerial();
+        } else {
+            walkAntsLockstep();
+        }
+    }
+
+    //the original ACS walk: every ant takes one step, then the pheromone on all
+    //of those edges is worn away, and so on until every ant is home
+    private void walkAntsSerial() {
+        profiler.begin(PhaseProfiler.Phase.REMOVE_PHERO_ON_THE_GO);
+
+        //progressively add edges and wear away pheromone after each ant has
+        //simultaneously added this edge (for all but last edge)
+        for (int edge = 0; edge < numCities - 1; edge++) {
 
-            //if by some miracle we get the perfect solution (or any percentage of the optimal
-            //set in ACO) we will return early
-            if(bestTourLength/optLength <= percentOfOpt){
-                return;
+            //goes through ant by ant, updating one edge to ant's tour
+            for (int antIndex = 0; antIndex < numAnts; antIndex++) {
+                ants[antIndex].addEdge();
             }
-            long timeElapsed = System.nanoTime() - startTime;
-        //if the time elapsed is longer than five minutes, quit out
-        if(((double)timeElapsed/1000000000)> 300){
-            return;
-        } 
-            
+
+            //removes pheromone on edges ants have now walked across
+            long mark = profiler.mark();
+            removePheroOnTheGo();
+            profiler.add(PhaseProfiler.Phase.REMOVE_PHERO_ON_THE_GO, mark);
         }
 
-        
+        //makes sure ants go home (they're still drunk)
+        for (int antIndex = 0; antIndex < numAnts; antIndex++) {
+            ants[antIndex].finalEdge();
+        }
+
+        //removes pheromone on final edge 
+        long mark = profiler.mark();
+        removePheroOnTheGo();
+        profiler.add(PhaseProfiler.Phase.REMOVE_PHERO_ON_THE_GO, mark);
+        profiler.end(PhaseProfiler.Phase.REMOVE_PHERO_ON_THE_GO);
     }
 
-    //takes off pheromone after ants have walked across an edge
-    public void removePheroOnTheGo() {
+    //same steps as walkAntsSerial, but the ants take each step on the worker
+    //threads. The local update still happens on this thread once every ant has
+    //stepped, so the pheromone the ants see is exactly what the serial walk sees.
+    private void walkAntsLockstep() {
+        profiler.begin(PhaseProfiler.Phase.REMOVE_PHERO_ON_THE_GO);
+        for (int edge = 0; edge < numCities - 1; edge++) {
+            runOnWorkers((first, last) -> {
+                for (int antIndex = first; antIndex < last; antIndex++) {
+                    ants[antIndex].addEdge();
+                }
+            });
+            long mark = profiler.mark();
+            removePheroOnTheGo();
+            profiler.add(PhaseProfiler.Phase.REMOVE_PHERO_ON_THE_GO, mark);
+        }
+
         for (int antIndex = 0; antIndex < numAnts; antIndex++) {
-            int currCity = ants[antIndex].getCurrCity();
-            int prevCity = ants[antIndex].getPrevCity();
-            edgeMatrix[currCity][prevCity].wearPheromone(wearFactor, t0);
-            edgeMatrix[prevCity][currCity].wearPheromone(wearFactor, t0);
+            ants[antIndex].finalEdge();
         }
+        long mark = profiler.mark();
+        removePheroOnTheGo();
+        profiler.add(PhaseProfiler.Phase.REMOVE_PHERO_ON_THE_GO, mark);
+        profiler.end(PhaseProfiler.Phase.REMOVE_PHERO_ON_THE_GO);
     }
 
-    //used in debugging, but prints tour in question
-    public void printTour(Edge[] tour) {
-        for (int i = 0; i < tour.length; i++) {
-            System.out.println("Edge from  " + tour[i].getSource() + " to " + tour[i].getDest());
+    //each ant walks its whole tour without waiting for the others, wearing the
+    //pheromone on each edge as soon as it crosses it. Other ants may see the
+    //update a step sooner or later than they would in lockstep.
+    private void walkAntsAsync(int firstAnt, int lastAnt) {
+        for (int antIndex = firstAnt; antIndex < lastAnt; antIndex++) {
+            AntACS ant = ants[antIndex];
+            for (int edge = 0; edge < numCities - 1; edge++) {
+                ant.addEdge();
+                wearConcurrently(ant.getCurrCity(), ant.getPrevCity());
+            }
+            ant.finalEdge();
+            wearConcurrently(ant.getCurrCity(), ant.getPrevCity());
         }
     }
 
+    //local update that is safe while other ants are walking
+    private void wearConcurrently(int cityA, int cityB) {
+        pheromone.wearAtomic(cityA, cityB, wearFactor, t0);
+        choiceInfo.update(cityA, cityB);
+        if (branching != null) {
+            branching.changed(cityA, cityB);
+        }
+    }
 
-    /**
-     * Read in data about all cities from the file.
-     */
-    public void readFile(String fileName) {
-        int numCities = 0;
-        try {
-            BufferedReader file = new BufferedReader(new FileReader(fileName));
-            String buff;
-
-            do {
-                //read next line and tokenize it
-                buff = file.readLine();
-                String stringTemp = buff.trim();
-                String[] result = stringTemp.split("\\s+");
-
-                //set the number of cities
-                if (result[0].equals("DIMENSION")) {
-                    numCities = Integer.parseInt(result[2]);
-                }
+    //a piece of work over the ants from firstAnt (inclusive) to lastAnt (exclusive)
+    private interface AntRange {
+        void run(int firstAnt, int lastAnt);
+    }
 
-            } while (!buff.equals("NODE_COORD_SECTION"));
+    //splits the ants into one chunk per thread and waits for every chunk to finish
+    private void runOnWorkers(AntRange work) {
+        int chunks = Math.min(numAnts, Math.max(2, options.getThreads()));
+        List<Callable<Void>> jobs = new ArrayList<Callable<Void>>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final int first = chunk * numAnts / chunks;
+            final int last = (chunk + 1) * numAnts / chunks;
+            jobs.add(termination.charged(() -> {
+                work.run(first, last);
+                return null;
+            }));
+        }
 
+        try {
+            for (Future<Void> job : workers.invokeAll(jobs)) {
+                job.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while ants were building tours", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ant failed to build a tour", e.getCause());
+        }
+    }
 
-            //set length of City array
-            this.numCities = numCities;
-            cities = new City[numCities];
+    //picks the pool ants walk on, if any
+    private void startWorkers() {
+        if (options.getExecutor() != null) {
+            workers = options.getExecutor();
+            ownsWorkers = false;
+        } else if (options.getThreads() > 1) {
+            workers = new ForkJoinPool(options.getThreads());
+            ownsWorkers = true;
+        }
+        workersStarted = true;
+    }
 
-            //put all info into in an array of "City" of length numCities
-            //City class will contain x and y coordinates of each city
-            //set coordinates of all cities
-            for (int i = 0; i < cities.length; i++) {
-                buff = file.readLine();
-                String stringTemp = buff.trim();
-                String[] tokens = stringTemp.split("\\s+");
-                cities[i] = new City(Integer.parseInt(tokens[0]), Double.parseDouble(tokens[1]),
-                        Double.parseDouble(tokens[2]));
+    //opens the snapshot file, if one is set, and with resume on carries on
+    //from the snapshot already in it
+    private void openCheckpoint() {
+        if (options.getCheckpointFile() == null) {
+            return;
+        }
+        try {
+            checkpoint = new Checkpoint(options.getCheckpointFile(), "ACS", numCities, pheromone,
+                    options.isResume());
+            if (options.isResume() && checkpoint.restore(pheromone, bestTour)) {
+                seed = checkpoint.getSeed();
+                //t0 came from a greedy tour on the seed this colony made up;
+                //take it again on the saved run's seed
+                greedyTour();
+                iterationsRun = checkpoint.getIterationsRun();
+                bestTourLength = checkpoint.getBestTourLength();
+                resumedNanos = checkpoint.getElapsedNanos();
+                choiceInfo.update();
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open checkpoint " + options.getCheckpointFile(), e);
+        }
+    }
 
-        } catch (Exception e) {
-            System.out.println("Error while reading file: " + e.getMessage());
+    //snapshots the colony every checkpoint interval and when it stops
+    private void saveCheckpoint() {
+        if (options.getCheckpointFile() == null
+                || (!stopped && iterationsRun % options.getCheckpointInterval() != 0)) {
+            return;
+        }
+        try {
+            if (checkpoint == null) {
+                //closed by close(); the file still holds this run
+                checkpoint = new Checkpoint(options.getCheckpointFile(), "ACS", numCities, pheromone, true);
+            }
+            checkpoint.save(seed, iterationsRun, bestTourLength, System.nanoTime() - startTime, bestTour,
+                    pheromone);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint " + options.getCheckpointFile(), e);
         }
+    }
 
+    //shuts down the pool if this colony made it, waits for the last snapshot
+    //to reach the disk and for the listeners to drain, and withdraws the live
+    //metrics; a later step() starts over
+    @Override
+    public void close() {
+        if (ownsWorkers) {
+            workers.shutdown();
+        }
+        workers = null;
+        ownsWorkers = false;
+        workersStarted = false;
+        if (dispatcher != null) {
+            dispatcher.close();
+            //a later step() hands its events to a new thread, once the old
+            //one has delivered everything
+            dispatcher = new IterationDispatcher(options.getIterationListeners(), "ACS-listeners");
+        }
+        if (metrics != null) {
+            metrics.unregister();
+        }
+        if (checkpoint != null) {
+            try {
+                checkpoint.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close checkpoint " + options.getCheckpointFile(), e);
+            } finally {
+                checkpoint = null;
+            }
+        }
     }
 
-    //Initialize matrix of edges
-    public void createEdges() {
-        edgeMatrix = new Edge[numCities][numCities];
-        
-        //initialize edgeMatrix
-        for (int source = 0; source < numCities; source++) {
-            for (int dest = 0; dest < numCities; dest++) {
-                edgeMatrix[source][dest] = new Edge(cities[source], cities[dest]);
-                
+    //takes off pheromone after ants have walked across an edge
+    public void removePheroOnTheGo() {
+        for (int antIndex = 0; antIndex < numAnts; antIndex++) {
+            int currCity = ants[antIndex].getCurrCity();
+            int prevCity = ants[antIndex].getPrevCity();
+            pheromone.wear(currCity, prevCity, wearFactor, t0);
+            choiceInfo.update(currCity, prevCity);
+            if (branching != null) {
+                branching.changed(currCity, prevCity);
             }
         }
+    }
+
+    //used in debugging, but prints tour in question
+    public void printTour(int[] tour) {
+        for (int i = 0; i + 1 < tour.length; i++) {
+            System.out.println("Edge from  " + tour[i] + " to " + tour[i + 1]);
+        }
+    }
+
+
+    //makes the improvers finished tours go through, if any
+    private void createLocalSearch() {
+        if (options.getLocalSearch() == LocalSearch.Kind.NONE) {
+            return;
+        }
+        localSearch = new LocalSearch[options.isLocalSearchAllAnts() ? numAnts : 1];
+        for (int i = 0; i < localSearch.length; i++) {
+            localSearch[i] = LocalSearch.create(options.getLocalSearch(), problem,
+                    options.getLocalSearchMillis() * 1000000);
+        }
+    }
+
+    //Initialize the pheromone storage
+    public void createEdges() {
+        pheromone = PheromoneMatrix.create(numCities, candidates, 0.0, problem.isLowMemory(),
+                options.isSinglePrecision());
         
         //run a nearest neighbor tour so we can calculate t0 before laying down initial pheromone
         greedyTour();
         
         // set initial pheromone level on all edges to be the same constant
-        for (int source = 0; source < numCities; source++) {
-            for (int dest = 0; dest < numCities; dest++) {
-                edgeMatrix[source][dest].addPheromone(t0);
-            }
-        }
+        pheromone.fill(t0);
+
+        choiceInfo = new ChoiceInfo(distances, pheromone, candidates, pheroWeight, heuristicWeight,
+                options.isSinglePrecision());
         
     }
     
     //creates an ant that runs a nearest neighbor tour and sets value of t0
     public void greedyTour() {
-        int randomCity = randInt(0, numCities + 1);
+        //the greedy tour gets its own stream, before any iteration's
+        RandomSource rand = RandomSource.create(options.getRandomKind(), RandomSource.seedFor(seed, -1, 0));
+        int randomCity = randInt(rand, 0, numCities);
         
-        AntACS greedyAnt = new AntACS(randomCity, numCities);
+        AntACS greedyAnt = new AntACS(this, randomCity, numCities);
         
         t0 = 1 / (numAnts * greedyAnt.getTourLength());
         
     }
     
-    //returns a random int bewteen min and max exclusive
-    public static int randInt(int min, int max) {
-        Random rand = new Random();
+    //returns a random int bewteen min (inclusive) and max (exclusive)
+    public static int randInt(RandomSource rand, int min, int max) {
         int randomNum = rand.nextInt((max - min)) + min;
         return randomNum;
     }
@@ -232,7 +582,10 @@ public class ACS {
      */
     public void generateAnts() {
 
-        ants = new AntACS[numAnts];
+        //the ants are made once and then reused every iteration
+        if (ants == null) {
+            ants = new AntACS[numAnts];
+        }
 
         int startCity = 0;
 
@@ -244,7 +597,14 @@ public class ACS {
                 startCity = startCity % numCities;
             }
 
-            ants[index] = new AntACS(startCity, numCities, pheroWeight, heuristicWeight, q0);
+            long antSeed = RandomSource.seedFor(seed, iteration, index);
+            if (ants[index] == null) {
+                ants[index] = new AntACS(this, startCity, numCities, pheroWeight, heuristicWeight, q0,
+                        RandomSource.create(options.getRandomKind(), antSeed));
+            } else {
+                ants[index].getRandom().setSeed(antSeed);
+                ants[index].reset(startCity);
+            }
 
             startCity++;
 
@@ -252,34 +612,125 @@ public class ACS {
 
     }
 
+    //pheromone a tour lays on the edge from source to dest. Duplicate cities
+    //count as MIN_LENGTH apart, as they do for eta, so the deposit stays finite.
+    private double depositFor(int source, int dest) {
+        return evapFactor / Math.max(distances.get(source, dest), ChoiceInfo.MIN_LENGTH);
+    }
+
     //makes the pheromone on all the edges evaporate by a predetermined factor
     public void evapPheromone() {
-        //walks through edge matrix
-        for (int source = 0; source < numCities; source++) {
-            for (int dest = 0; dest < numCities; dest++) {
-                edgeMatrix[source][dest].evapPheromone(evapFactor);
-            }
-        }
+        pheromone.evaporate(evapFactor);
     }
 
-    //returns edge object that represents the source to the destination
-    public static Edge getEdge(int source, int dest) {
-        return edgeMatrix[source][dest];
+    //returns an edge view that represents the source to the destination
+    public Edge getEdge(int source, int dest) {
+        return new Edge(cities[source], cities[dest], distances, pheromone);
     }
 
     //returns the pheromone level along a path
-    public static double getPheroLevel(int i, int j) {
-        return edgeMatrix[i][j].getPheromone();
+    public double getPheroLevel(int i, int j) {
+        return pheromone.get(i, j);
     }
     
     //returns the distance from source to destination
-    public static double getEdgeLength(int i, int j) {
-        return edgeMatrix[i][j].getLength();
+    public double getEdgeLength(int i, int j) {
+        return distances.get(i, j);
+    }
+
+    //returns the nearest neighbour lists, or null if they are turned off
+    public CandidateLists getCandidates() {
+        return candidates;
+    }
+
+    //returns the cached edge weights
+    public ChoiceInfo getChoiceInfo() {
+        return choiceInfo;
     }
     
+    //the shared data this colony runs on
+    @Override
+    public Problem getProblem() {
+        return problem;
+    }
+
+    //returns a copy of the best tour so far (every city once, with the first
+    //city repeated at the end), or null before the first iteration
+    @Override
+    public int[] getBestTour() {
+        return iterationsRun == 0 ? null : bestTour.clone();
+    }
+
     //pretty self explanatory
+    @Override
     public double getBestTourLength(){
         return bestTourLength;
     }
 
+    //master seed of this run, enough to repeat it exactly (outside ASYNC mode)
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    //number of iterations the colony ran before stopping
+    @Override
+    public int getIterationsRun() {
+        return iterationsRun;
+    }
+
+    //takes in a tour found by another colony: a deposit is laid
+    //down like the one on the best tour
+    @Override
+    public boolean receiveTour(int[] tour, IslandModel.Update update) {
+        if (tour.length != numCities + 1 || tour[0] != tour[numCities]) {
+            throw new IllegalArgumentException("Not a closed tour of " + numCities + " cities");
+        }
+        double length = 0;
+        for (int edge = 0; edge < numCities; edge++) {
+            length += distances.get(tour[edge], tour[edge + 1]);
+        }
+        boolean better = length < bestTourLength;
+
+        if (update == IslandModel.Update.DEPOSIT || (update == IslandModel.Update.DEPOSIT_IF_BETTER && better)) {
+            for (int edge = 0; edge < numCities; edge++) {
+                int source = tour[edge];
+                int dest = tour[edge + 1];
+                pheromone.deposit(source, dest, depositFor(source, dest));
+                if (branching != null) {
+                    branching.changed(source, dest);
+                }
+            }
+            choiceInfo.update();
+        }
+
+        if (better) {
+            bestTourLength = length;
+            System.arraycopy(tour, 0, bestTour, 0, numCities + 1);
+        }
+        return better;
+    }
+
+    //why the colony stopped, or null while it is still running
+    @Override
+    public Termination.Reason getStopReason() {
+        return stopReason;
+    }
+
+    //average lambda branching factor at the last iteration, NaN unless the
+    //options set a minimum for it
+    public double getBranchingFactor() {
+        return termination.getBranchingFactor();
+    }
+
+    //ant steps (edges added to tours) per second of tour construction
+    public double getStepsPerSecond() {
+        return constructionNanos == 0 ? 0.0 : antSteps * 1e9 / constructionNanos;
+    }
+
+    //seconds spent building tours, including local pheromone updates
+    public double getConstructionSeconds() {
+        return constructionNanos / 1e9;
+    }
+
 }
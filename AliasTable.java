@@ -0,0 +1,110 @@
+/*
+ * Walker's alias method over the candidate list of every city. Once the tables
+ * are built, a weighted draw among a city's candidates costs one random number
+ * and one comparison, whatever the list size. The tables cover a whole list,
+ * so callers reject candidates that were already visited and draw again.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class AliasTable {
+
+    private final int numCities;
+    private final int listSize;
+
+    //per slot: chance of keeping the slot, and the rank used otherwise
+    private final double[] keep;
+    private final int[] alias;
+
+    //work lists for Vose's construction
+    private final int[] small;
+    private final int[] large;
+    private final double[] scaled;
+
+    //creates empty tables for numCities lists of listSize candidates
+    public AliasTable(int numCities, int listSize) {
+        this.numCities = numCities;
+        this.listSize = listSize;
+        keep = new double[numCities * listSize];
+        alias = new int[numCities * listSize];
+        small = new int[listSize];
+        large = new int[listSize];
+        scaled = new double[listSize];
+    }
+
+    //rebuilds the table of every city from the weights in choiceInfo
+    public void build(ChoiceInfo choiceInfo) {
+        for (int city = 0; city < numCities; city++) {
+            build(choiceInfo, city);
+        }
+    }
+
+    //rebuilds the table of one city (Vose's method, O(listSize))
+    public void build(ChoiceInfo choiceInfo, int city) {
+        int row = city * listSize;
+
+        double total = 0.0;
+        for (int rank = 0; rank < listSize; rank++) {
+            total += choiceInfo.get(city, rank);
+        }
+
+        //every weight underflowed, so fall back to a uniform table
+        if (!(total > 0.0) || Double.isInfinite(total)) {
+            for (int rank = 0; rank < listSize; rank++) {
+                keep[row + rank] = 1.0;
+                alias[row + rank] = rank;
+            }
+            return;
+        }
+
+        int numSmall = 0;
+        int numLarge = 0;
+        for (int rank = 0; rank < listSize; rank++) {
+            scaled[rank] = choiceInfo.get(city, rank) * listSize / total;
+            if (scaled[rank] < 1.0) {
+                small[numSmall++] = rank;
+            } else {
+                large[numLarge++] = rank;
+            }
+        }
+
+        while (numSmall > 0 && numLarge > 0) {
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+
+            keep[row + less] = scaled[less];
+            alias[row + less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[numSmall++] = more;
+            } else {
+                large[numLarge++] = more;
+            }
+        }
+
+        //whatever is left is 1.0 up to rounding
+        while (numLarge > 0) {
+            int rank = large[--numLarge];
+            keep[row + rank] = 1.0;
+            alias[row + rank] = rank;
+        }
+        while (numSmall > 0) {
+            int rank = small[--numSmall];
+            keep[row + rank] = 1.0;
+            alias[row + rank] = rank;
+        }
+    }
+
+    //draws the rank of a candidate of city in proportion to its weight
+    public int sample(int city, RandomSource random) {
+        double u = random.nextDouble() * listSize;
+        int rank = Math.min((int) u, listSize - 1);
+        int slot = city * listSize + rank;
+        return (u - rank) < keep[slot] ? rank : alias[slot];
+    }
+
+}
@@ -1,117 +1,129 @@
-/* Creates an instance of one ant for the ACS algorithm.
+/* Creates an instance of one ant for the ACS algorithm. The same ant is reused
+ * every iteration: reset() clears its tour without allocating anything.
 */
 
 package aco;
 
-import java.util.ArrayList;
-import java.util.Random;
-
 /**
  *
  * @author PryhuberA
  */
 public class AntACS {
 
-    private final int startCity;
+    private int startCity;
     private final int numEdges;
     private final int numCities;
     
 
-    private Edge[] tour;
+    //cities in the order they were visited; the last entry is startCity again
+    private final int[] tour;
     private double tourLength = 0.0;
     private int prevCity;
     private int currCity;
     private int tourIndex = 0;
+    //steps of this tour that found every candidate visited and had to look at
+    //every unvisited city
+    private int fallbacks;
     private double pheroWeight;
     private double heuristicWeight;
     private double q0;
-    private ArrayList<Integer> allowedCities = new ArrayList<Integer>();
+    private final UnvisitedCities allowedCities;
+    private final RandomSource random;
+    private final RouletteWheel wheel;
+    //greedy value of every city addDeterministic looks at
+    private final double[] values;
+    private final ACS colony;
+    private final CandidateLists candidates;
+    private final ChoiceInfo choiceInfo;
 
     //constructor for ACS ants,
-    public AntACS(int startCity, int numCities, double pheroWeight, double heuristicWeight, double q0) {
+    public AntACS(ACS colony, int startCity, int numCities, double pheroWeight, double heuristicWeight,
+            double q0, RandomSource random) {
 
-        this.startCity = startCity;
+        this.colony = colony;
+        this.candidates = colony.getCandidates();
+        this.choiceInfo = colony.getChoiceInfo();
         this.numEdges = numCities - 1;
         this.numCities = numCities;
         this.pheroWeight = pheroWeight;
         this.heuristicWeight = heuristicWeight;
         this.q0 = q0;
+        this.random = random;
 
-        //create a new edge object 
-        tour = new Edge[numCities];
+        tour = new int[numCities + 1];
+        allowedCities = new UnvisitedCities(numCities);
+        wheel = new RouletteWheel(numCities);
+        values = new double[numCities];
 
-        //add every city to the allowed city arrayList
-        for (int cityIndex = 0; cityIndex < numCities; cityIndex++) {
-            if (cityIndex == startCity) {
-                continue;
-            }
-            allowedCities.add(cityIndex);
-        }
-
-        currCity = startCity;
-        prevCity = startCity;
+        reset(startCity);
 
     }
 
     //construcor to create a nearest neighbor tour, will lead to tO (tau_O)
-    public AntACS(int startCity, int numCities) {
-        this.startCity = startCity;
+    public AntACS(ACS colony, int startCity, int numCities) {
+        this.colony = colony;
+        this.candidates = colony.getCandidates();
+        this.choiceInfo = null;
         this.numEdges = numCities - 1;
         this.numCities = numCities;
-        this.currCity = startCity;
+        this.random = null;
+        this.wheel = null;
+        this.values = null;
 
-        //create new edge object
-        tour = new Edge[numCities];
+        tour = new int[numCities + 1];
+        allowedCities = new UnvisitedCities(numCities);
 
-        //add every city to the allowed city arrayList
-        for (int cityIndex = 0; cityIndex < numCities; cityIndex++) {
-            if (cityIndex == startCity) {
-                continue;
-            }
-            allowedCities.add(cityIndex);
-        }
+        reset(startCity);
 
         //for every edge(path) between cities, update our tour
         for (int edge = 0; edge < numEdges; edge++) {
 
-            double shortestLength = Double.MAX_VALUE;
-            int closestCity = currCity;
-            int closestCityIndex = allowedCities.indexOf(closestCity);
+            //candidate lists are sorted, so the first unvisited one is the closest
+            int closestCity = firstUnvisitedCandidate();
 
             //goes through every possible allowed city looking for the closest
-            for (int index = 0; index < allowedCities.size(); index++) {
+            if (closestCity < 0) {
+                double shortestLength = Double.MAX_VALUE;
+                for (int index = 0; index < allowedCities.size(); index++) {
 
-                double currLength = ACS.getEdge(currCity, allowedCities.get(index)).getLength();
+                    int city = allowedCities.get(index);
+                    double currLength = colony.getEdgeLength(currCity, city);
 
-                //checks to see if value is shorter than current best so far
-                if (currLength < shortestLength) {
-                    shortestLength = currLength;
-                    closestCity = allowedCities.get(index);
-                    closestCityIndex = index;
-                }
+                    //checks to see if value is shorter than current best so far
+                    if (currLength < shortestLength) {
+                        shortestLength = currLength;
+                        closestCity = city;
+                    }
 
+                }
             }
 
             //updates next city to be the next closest city
-            tour[tourIndex] = ACS.getEdge(currCity, closestCity);
-            prevCity = currCity;
-            currCity = closestCity;
-            allowedCities.remove(closestCityIndex);
-
-            tourLength += (tour[tourIndex]).getLength();
-            tourIndex++;
+            moveTo(closestCity);
         }
 
-        tour[tourIndex] = ACS.getEdge(currCity, startCity);
-        tourLength += tour[tourIndex].getLength();
+        finalEdge();
 
     }
 
+    //empties the tour so the ant can walk again from startCity
+    public void reset(int startCity) {
+        this.startCity = startCity;
+        allowedCities.reset();
+        allowedCities.remove(startCity);
+
+        tour[0] = startCity;
+        tourIndex = 0;
+        tourLength = 0.0;
+        fallbacks = 0;
+        currCity = startCity;
+        prevCity = startCity;
+    }
+
     //method to add an edge to our current tour
     public void addEdge() {
         //determine if next move is probabilistic or determinisitic
-        Random actionSelect = new Random();
-        double choice = actionSelect.nextDouble();
+        double choice = random.nextDouble();
 
         if (choice <= q0) {
             addDeterministic();
@@ -119,106 +131,145 @@ public class AntACS {
             addProbabilistic();
         }
 
-        //add the length of the edge we just added to the current tour length
-        tourLength += (tour[tourIndex]).getLength();
-        tourIndex++;
-
     }
 
     //method to probabilistically add tour edges
     public void addProbabilistic() {
 
-        double allowedEdgeSum = 0.0;
-
-        //calculate allowedEdgeSum denominator for the cities allowed 
-        for (int city = 0; city < allowedCities.size(); city++) {
-            allowedEdgeSum += calcEdgeData(currCity, allowedCities.get(city));
+        //put the unvisited nearest neighbours on the wheel first
+        wheel.clear();
+        if (candidates != null) {
+            for (int rank = 0; rank < candidates.size(); rank++) {
+                int city = candidates.get(currCity, rank);
+                if (allowedCities.contains(city)) {
+                    wheel.add(city, choiceInfo.get(currCity, rank));
+                }
+            }
         }
 
-        //create random double between 0.0 and 1.0
-        Random rand = new Random();
-        double currRand = rand.nextDouble();
-
-        double sum = 0.0;
-
-        //go through all allowedCities, incrementally adding probabilities, until 
-        //doubleSum surpasses currRand
-        for (int index = 0; index < allowedCities.size(); index++) {
-
-            sum += calcEdgeData(currCity, allowedCities.get(index)) / allowedEdgeSum;
-
-            //once we surpass currRand, travel to the current allowed city we
-            //are considering
-            if (currRand < sum) {
-                tour[tourIndex] = ACS.getEdge(currCity, allowedCities.get(index));
-                prevCity = currCity;
-                currCity = allowedCities.get(index);
-                allowedCities.remove(index);
-                break;
+        //every candidate has been visited, so every allowed city goes on the wheel
+        if (wheel.size() == 0) {
+            fallbacks++;
+            double[] weights = wheel.getWeights();
+            int count = allowedCities.size();
+            for (int index = 0; index < count; index++) {
+                weights[index] = calcEdgeData(currCity, allowedCities.get(index));
             }
+            moveTo(allowedCities.get(wheel.spinWeights(count, random)));
+            return;
         }
 
+        moveTo(wheel.spin(random));
+
     }
 
     //chooses next edge greedily 
     public void addDeterministic() {
-        double bestVal = 0.0;
-        int bestCity = currCity;
-        int bestCityIndex = allowedCities.indexOf(bestCity);
+        int bestCity = -1;
+
+        //goes through the unvisited nearest neighbours first; visited ones get
+        //a value no edge can have
+        if (candidates != null) {
+            int listSize = candidates.size();
+            boolean anyAllowed = false;
+            for (int rank = 0; rank < listSize; rank++) {
+                int city = candidates.get(currCity, rank);
+                if (allowedCities.contains(city)) {
+                    values[rank] = colony.getPheroLevel(currCity, city) * choiceInfo.getHeuristic(currCity, rank);
+                    anyAllowed = true;
+                } else {
+                    values[rank] = -1.0;
+                }
+            }
+            if (anyAllowed) {
+                bestCity = candidates.get(currCity, Kernels.argMax(values, 0, listSize));
+            }
+        }
 
-        //goes through every possible value for allowed cities
-        for (int index = 0; index < allowedCities.size(); index++) {
+        //every candidate has been visited, so go through every allowed city
+        if (bestCity < 0) {
+            fallbacks++;
+            int count = allowedCities.size();
+            for (int index = 0; index < count; index++) {
+                values[index] = greedyValue(allowedCities.get(index));
+            }
+            bestCity = allowedCities.get(Kernels.argMax(values, 0, count));
+        }
 
-            double currVal;
-            Edge nextEdge = ACS.getEdge(currCity, allowedCities.get(index));
+        //updates next city to be the best value according to this method of assesment
+        moveTo(bestCity);
 
-            double pheroLevel = nextEdge.getPheromone();
-            double eta = 1 / (nextEdge.getLength());
-            double etaToBeta = Math.pow(eta, heuristicWeight);
+    }
 
-            currVal = pheroLevel * etaToBeta;
+    //value used by the greedy choice: pheromone times eta to the beta
+    private double greedyValue(int city) {
+        return colony.getPheroLevel(currCity, city) * choiceInfo.calcHeuristic(currCity, city);
+    }
 
-            //checks to see if value is better than current best
-            if (currVal > bestVal) {
-                bestVal = currVal;
-                bestCity = allowedCities.get(index);
-                bestCityIndex = index;
+    //returns the closest unvisited candidate of the current city, or -1 if
+    //there is none
+    private int firstUnvisitedCandidate() {
+        if (candidates != null) {
+            for (int rank = 0; rank < candidates.size(); rank++) {
+                int city = candidates.get(currCity, rank);
+                if (allowedCities.contains(city)) {
+                    return city;
+                }
             }
-
         }
+        return -1;
+    }
 
-        //updates next city to be the best value according to this method of assesment
-        tour[tourIndex] = ACS.getEdge(currCity, bestCity);
+    //adds the edge to city to the tour and marks city as visited
+    private void moveTo(int city) {
+        tourLength += colony.getEdgeLength(currCity, city);
+        tour[++tourIndex] = city;
         prevCity = currCity;
-        currCity = bestCity;
-
-        allowedCities.remove(bestCityIndex);
-
+        currCity = city;
+        allowedCities.remove(city);
     }
 
 //    makes sure ants go home
     public void finalEdge() {
-        tour[tourIndex] = ACS.getEdge(currCity, startCity);
-        tourLength += tour[tourIndex].getLength();
+        tourLength += colony.getEdgeLength(currCity, startCity);
+        tour[++tourIndex] = startCity;
+        prevCity = currCity;
+        currCity = startCity;
+    }
+
+    //runs a local search over the finished tour
+    public void improveTour(LocalSearch localSearch) {
+        tourLength = localSearch.improve(tour, tourLength);
     }
 
     //print info from each edge of the Ant's tour
     public void printPath() {
-        for (int i = 0; i < tour.length; i++) {
-            System.out.println("Edge from  " + tour[i].getSource() + " to " + tour[i].getDest());
+        for (int i = 0; i < numCities; i++) {
+            System.out.println("Edge from  " + tour[i] + " to " + tour[i + 1]);
         }
     }
 
-    //getter to return current tour as an edge matrix
-    public Edge[] getTour() {
+    //returns the cities of the tour in order, with startCity repeated at the end.
+    //This is the ant's own buffer and is overwritten by the next reset()
+    public int[] getCityTour() {
         return tour;
     }
 
+    //getter for the number of full-row steps in the current tour
+    public int getFallbacks() {
+        return fallbacks;
+    }
+
     //getter for tour length
     public double getTourLength() {
         return tourLength;
     }
 
+    //getter for the ant's generator, reseeded by the colony every iteration
+    public RandomSource getRandom() {
+        return random;
+    }
+
     //getter for current city
     public int getCurrCity() {
         return currCity;
@@ -232,8 +283,7 @@ public class AntACS {
     // returns pheromone and heuristic info about an edge to be used to calculate
     // probabilities of adding an edge
     public double calcEdgeData(int source, int dest) {
-        return ((Math.pow(ACS.getPheroLevel(source, dest), pheroWeight))
-                * Math.pow(1 / ACS.getEdgeLength(source, dest), heuristicWeight));
+        return choiceInfo.calcEdgeData(source, dest);
     }
 
 }
@@ -1,49 +1,72 @@
 /*
- * Creates an instance of one ant for the EAS algorithm.
+ * Creates an instance of one ant for the EAS algorithm. The same ant is reused
+ * every iteration: walk() builds a fresh tour without allocating anything.
  */
 package aco;
 
-import java.util.ArrayList;
-import java.util.Random;
-
 /**
  *
  * @author PryhuberA
  */
 public class AntEAS {
 
-    private final int startCity;
+    //alias draws tried before falling back to the roulette wheel
+    private static final int ALIAS_ATTEMPTS = 4;
+
+    private int startCity;
     private final double pheroWeight;
     private final double heuristicWeight;
     private final int numEdges;
     private final int numCities;
     
-    private Edge[] tour;
+    //cities in the order they were visited; the last entry is startCity again
+    private final int[] tour;
     private double tourLength = 0.0;
     private int currCity;
     private int tourIndex = 0;
-    private ArrayList<Integer> allowedCities = new ArrayList<Integer>();
+    //steps of this tour that found every candidate visited and had to look at
+    //every unvisited city
+    private int fallbacks;
+    private final UnvisitedCities allowedCities;
+    private final RandomSource random;
+    private final RouletteWheel wheel;
+    private final EAS colony;
+    private final CandidateLists candidates;
+    private final ChoiceInfo choiceInfo;
+    private final AliasTable aliasTable;
     
     //constructor for ant
-    public AntEAS(int startCity, int numCities, double pheroWeight, double heuristicWeight) {
+    public AntEAS(EAS colony, int startCity, int numCities, double pheroWeight, double heuristicWeight,
+            RandomSource random) {
 
-        this.startCity = startCity;
+        this.colony = colony;
+        this.candidates = colony.getCandidates();
+        this.choiceInfo = colony.getChoiceInfo();
+        this.aliasTable = choiceInfo.getAliasTable();
         this.numEdges = numCities - 1;
         this.numCities = numCities;
         this.pheroWeight = pheroWeight;
         this.heuristicWeight = heuristicWeight;
+        this.random = random;
 
-        tour = new Edge[numCities];
+        tour = new int[numCities + 1];
+        allowedCities = new UnvisitedCities(numCities);
+        wheel = new RouletteWheel(numCities);
 
-        //add all but the startCity to allowedCities
-        for (int cityIndex = 0; cityIndex < numCities; cityIndex++) {
-            if (cityIndex == startCity) {
-                continue;
-            }
-//            System.out.println("adding " + cityIndex + " to allowedCities");
-            allowedCities.add(cityIndex);
-        }
+        walk(startCity);
+
+    }
 
+    //throws away the old tour and builds a new one starting at startCity
+    public void walk(int startCity) {
+        this.startCity = startCity;
+        allowedCities.reset();
+        allowedCities.remove(startCity);
+
+        tour[0] = startCity;
+        tourIndex = 0;
+        tourLength = 0.0;
+        fallbacks = 0;
         currCity = startCity;
 
         //build the tour by adding numEdges edges
@@ -52,64 +75,99 @@ public class AntEAS {
         }
 
         // go home ants, you're drunk
-        tour[tourIndex] = EAS.getEdge(currCity, startCity);
-
-        tourLength += tour[tourIndex].getLength();
+        moveTo(startCity);
 
     }
     
     //adds edge to the tour so far, and updates the tour length
     public void addEdge() {
 
-        double allowedEdgeSum = 0;
-
-        for (int city = 0; city < allowedCities.size(); city++) {
-            allowedEdgeSum += calcEdgeData(currCity, allowedCities.get(city));
+        //alias tables answer most draws without looking at the other candidates
+        if (aliasTable != null && addAliasEdge()) {
+            return;
         }
 
-        //create random double between 0.0 and 1.0
-        Random rand = new Random();
-        double currRand = rand.nextDouble();
-
-        double sum = 0.0;
+        //put the unvisited nearest neighbours on the wheel first
+        wheel.clear();
+        if (candidates != null) {
+            for (int rank = 0; rank < candidates.size(); rank++) {
+                int city = candidates.get(currCity, rank);
+                if (allowedCities.contains(city)) {
+                    wheel.add(city, choiceInfo.get(currCity, rank));
+                }
+            }
+        }
 
-        //go through all allowedCities, incrementally adding probabilities, until 
-        //doubleSum surpasses currRand
-        for (int index = 0; index < allowedCities.size(); index++) {
+        //every candidate has been visited, so every allowed city goes on the wheel
+        if (wheel.size() == 0) {
+            fallbacks++;
+            double[] weights = wheel.getWeights();
+            int count = allowedCities.size();
+            for (int index = 0; index < count; index++) {
+                weights[index] = calcEdgeData(currCity, allowedCities.get(index));
+            }
+            moveTo(allowedCities.get(wheel.spinWeights(count, random)));
+            return;
+        }
 
-            sum += calcEdgeData(currCity, allowedCities.get(index)) / allowedEdgeSum;
+        moveTo(wheel.spin(random));
 
-            //once we surpass currRand, travel to the current allowed city we
-            //are considering
-            if (currRand < sum) {
+    }
 
-                tour[tourIndex] = EAS.getEdge(currCity, allowedCities.get(index));
-                currCity = allowedCities.get(index);
-                allowedCities.remove(index);
-                break;
+    //draws from the alias table of the current city until an unvisited
+    //candidate comes up. Rejecting visited ones keeps the odds exactly those of
+    //the roulette wheel; after a few misses (late in the tour, when most
+    //candidates are taken) the wheel is cheaper, so give up and return false.
+    private boolean addAliasEdge() {
+        for (int attempt = 0; attempt < ALIAS_ATTEMPTS; attempt++) {
+            int city = candidates.get(currCity, aliasTable.sample(currCity, random));
+            if (allowedCities.contains(city)) {
+                moveTo(city);
+                return true;
             }
-
         }
+        return false;
+    }
 
-        //add the length of the edge we just added to the current tour length
-        tourLength += (tour[tourIndex]).getLength();
-
-        tourIndex++;
+    //adds the edge to city to the tour, updates the tour length and marks city
+    //as visited
+    private void moveTo(int city) {
+        tourLength += colony.getEdgeLength(currCity, city);
+        tour[++tourIndex] = city;
+        currCity = city;
+        if (allowedCities.contains(city)) {
+            allowedCities.remove(city);
+        }
+    }
 
+    //runs a local search over the finished tour
+    public void improveTour(LocalSearch localSearch) {
+        tourLength = localSearch.improve(tour, tourLength);
     }
 
     //print info from each edge of the Ant's tour
     public void printPath() {
-        for (int i = 0; i < tour.length; i++) {
-            System.out.println("Edge from  " + tour[i].getSource() + " to " + tour[i].getDest());
+        for (int i = 0; i < numCities; i++) {
+            System.out.println("Edge from  " + tour[i] + " to " + tour[i + 1]);
         }
     }
 
-    //return current tour as an edge matrix
-    public Edge[] getTour() {
+    //returns the cities of the tour in order, with startCity repeated at the end.
+    //This is the ant's own buffer and is overwritten by the next walk()
+    public int[] getCityTour() {
         return tour;
     }
 
+    //getter for the ant's generator, reseeded by the colony every iteration
+    public RandomSource getRandom() {
+        return random;
+    }
+
+    //getter for the number of full-row steps in the current tour
+    public int getFallbacks() {
+        return fallbacks;
+    }
+
     //getter for tour length
     public double getTourLength() {
         return tourLength;
@@ -118,8 +176,7 @@ public class AntEAS {
     // returns pheromone and heuristic info about an edge to be used to calculate
     // probabilities of adding an edge
     public double calcEdgeData(int source, int dest) {
-        return ((Math.pow(EAS.getPheroLevel(source, dest), pheroWeight))
-                * Math.pow(1 / EAS.getEdgeLength(source, dest), heuristicWeight));
+        return choiceInfo.calcEdgeData(source, dest);
     }
 
 }
@@ -0,0 +1,454 @@
+/*
+ * Small command line benchmarks for comparing the different ways the colonies
+ * can be run. Output is CSV so it can be pasted next to the ACO data files.
+ *
+ *   java aco.Benchmark acs-modes <file.tsp> [threads] [iterations] [ants]
+ *   java aco.Benchmark local-search <file.tsp> <optimal length> [target ratio] [seconds] [threads]
+ *   java aco.Benchmark kernels [milliseconds]
+ *   java aco.Benchmark precision <file.tsp> [iterations] [runs] [threads]
+ *   java aco.Benchmark islands <file.tsp> <optimal length> [islands] [interval] [seconds]
+ *   java aco.Benchmark distributed <file.tsp> <optimal length> [workers] [seconds] [ACS|EAS]
+ *   java aco.Benchmark checkpoint <file.tsp> [iterations]
+ */
+package aco;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class Benchmark {
+
+    private static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_ITER = 20;
+    private static final int DEFAULT_ANTS = 20;
+    private static final double DEFAULT_TARGET_RATIO = 1.05;
+    private static final double DEFAULT_SECONDS = 60;
+    private static final int DEFAULT_KERNEL_MILLIS = 200;
+    private static final int DEFAULT_PRECISION_ITER = 200;
+    private static final int DEFAULT_RUNS = 5;
+    private static final int DEFAULT_ISLANDS = Math.max(2, DEFAULT_THREADS);
+    private static final int DEFAULT_INTERVAL = 10;
+    private static final double DEFAULT_ISLAND_SECONDS = 30;
+    private static final int DEFAULT_WORKERS = 3;
+    private static final int DEFAULT_CHECKPOINT_ITER = 40;
+
+    //keeps the JIT from dropping kernel calls whose results are not used
+    private static double sink;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        if (args[0].equals("kernels")) {
+            kernels(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_KERNEL_MILLIS);
+            return;
+        }
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+
+        String mode = args[0];
+        String file = args[1];
+
+        switch (mode) {
+            case "acs-modes": {
+                int threads = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_THREADS;
+                int numIter = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ITER;
+                int numAnts = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_ANTS;
+                acsModes(file, threads, numIter, numAnts);
+                break;
+            }
+            case "local-search": {
+                if (args.length < 3) {
+                    usage();
+                    return;
+                }
+                double optLength = Double.parseDouble(args[2]);
+                double ratio = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_TARGET_RATIO;
+                double seconds = args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_SECONDS;
+                int threads = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_THREADS;
+                localSearch(file, optLength, ratio, seconds, threads);
+                break;
+            }
+            case "precision": {
+                int numIter = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PRECISION_ITER;
+                int runs = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RUNS;
+                int threads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+                precision(file, numIter, runs, threads);
+                break;
+            }
+            case "islands": {
+                if (args.length < 3) {
+                    usage();
+                    return;
+                }
+                double optLength = Double.parseDouble(args[2]);
+                int islands = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ISLANDS;
+                int interval = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_INTERVAL;
+                double seconds = args.length > 5 ? Double.parseDouble(args[5]) : DEFAULT_ISLAND_SECONDS;
+                islands(file, optLength, islands, interval, seconds);
+                break;
+            }
+            case "distributed": {
+                if (args.length < 3) {
+                    usage();
+                    return;
+                }
+                double optLength = Double.parseDouble(args[2]);
+                int workers = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_WORKERS;
+                double seconds = args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_ISLAND_SECONDS;
+                String algorithm = args.length > 5 ? args[5] : "EAS";
+                distributed(file, optLength, workers, seconds, algorithm);
+                break;
+            }
+            case "checkpoint": {
+                int numIter = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CHECKPOINT_ITER;
+                checkpoint(file, numIter);
+                break;
+            }
+            default:
+                usage();
+        }
+    }
+
+    //prints the available benchmarks
+    private static void usage() {
+        System.out.println("usage: java aco.Benchmark acs-modes <file.tsp> [threads] [iterations] [ants]");
+        System.out.println("       java aco.Benchmark local-search <file.tsp> <optimal length> [target ratio]"
+                + " [seconds] [threads]");
+        System.out.println("       java aco.Benchmark kernels [milliseconds]");
+        System.out.println("       java aco.Benchmark precision <file.tsp> [iterations] [runs] [threads]");
+        System.out.println("       java aco.Benchmark islands <file.tsp> <optimal length> [islands] [interval]"
+                + " [seconds]");
+        System.out.println("       java aco.Benchmark distributed <file.tsp> <optimal length> [workers] [seconds]"
+                + " [ACS|EAS]");
+        System.out.println("       java aco.Benchmark checkpoint <file.tsp> [iterations]");
+    }
+
+    //compares serial, lockstep and asynchronous ACS walking on the same instance
+    private static void acsModes(String file, int threads, int numIter, int numAnts) {
+        System.out.println("mode, threads, iterations, best length, construction s, steps/s, iterations/s");
+
+        runAcs("serial", file, numIter, numAnts, new ColonyOptions());
+        runAcs("lockstep", file, numIter, numAnts, new ColonyOptions()
+                .setThreads(threads).setAcsMode(ColonyOptions.AcsMode.LOCKSTEP));
+        runAcs("async", file, numIter, numAnts, new ColonyOptions()
+                .setThreads(threads).setAcsMode(ColonyOptions.AcsMode.ASYNC));
+    }
+
+    //runs one ACS colony with the rule of thumb parameters and prints its throughput
+    private static void runAcs(String label, String file, int numIter, int numAnts, ColonyOptions options) {
+        ACS acs = new ACS(numAnts, numIter, 1, 3.5, 0.1, 0.9, 0.1, 1, 0, file, options);
+        double seconds = acs.getConstructionSeconds();
+        System.out.println(label + ", " + options.getThreads() + ", " + acs.getIterationsRun() + ", "
+                + acs.getBestTourLength() + ", " + seconds + ", " + acs.getStepsPerSecond() + ", "
+                + (seconds == 0 ? 0 : acs.getIterationsRun() / seconds));
+    }
+
+    //time and quality of ACS and EAS with and without local search: each colony runs
+    //until it reaches ratio times the optimal length or seconds run out
+    private static void localSearch(String file, double optLength, double ratio, double seconds, int threads) {
+        System.out.println("algorithm, local search, iterations, seconds, best length, ratio, reached target");
+
+        Problem problem = Problem.load(file, new ColonyOptions());
+
+        for (String algorithm : new String[] {"ACS", "EAS"}) {
+            runToTarget(algorithm, "none", problem, optLength, ratio, seconds, new ColonyOptions()
+                    .setThreads(threads));
+            runToTarget(algorithm, "2-opt best", problem, optLength, ratio, seconds, new ColonyOptions()
+                    .setThreads(threads).setLocalSearch(LocalSearch.Kind.TWO_OPT).setLocalSearchAllAnts(false));
+            runToTarget(algorithm, "2-opt all", problem, optLength, ratio, seconds, new ColonyOptions()
+                    .setThreads(threads).setLocalSearch(LocalSearch.Kind.TWO_OPT));
+            runToTarget(algorithm, "or-opt all", problem, optLength, ratio, seconds, new ColonyOptions()
+                    .setThreads(threads).setLocalSearch(LocalSearch.Kind.OR_OPT));
+        }
+    }
+
+    //steps one colony until it reaches the target ratio or the time is up
+    private static void runToTarget(String algorithm, String label, Problem problem, double optLength,
+            double ratio, double seconds, ColonyOptions options) {
+        Solver solver = algorithm.equals("ACS")
+                ? new ACS(problem, DEFAULT_ANTS, Integer.MAX_VALUE, 1, 3.5, 0.1, 0.9, 0.1, optLength, ratio, options)
+                : new EAS(problem, DEFAULT_ANTS, Integer.MAX_VALUE, 1, 3.5, 0.1, 20, optLength, ratio, options);
+
+        long start = System.nanoTime();
+        double elapsed = 0;
+        try {
+            while (elapsed < seconds && solver.step()) {
+                elapsed = (System.nanoTime() - start) / 1e9;
+            }
+        } finally {
+            solver.close();
+        }
+        elapsed = (System.nanoTime() - start) / 1e9;
+
+        double best = solver.getBestTourLength();
+        System.out.println(algorithm + ", " + label + ", " + solver.getIterationsRun() + ", " + elapsed + ", "
+                + best + ", " + best / optLength + ", " + (best / optLength <= ratio));
+    }
+
+    //quality and speed of double and float storage: both run the same seeds
+    //for the same number of iterations, the first run of each is a warm up
+    private static void precision(String file, int numIter, int runs, int threads) {
+        System.out.println("algorithm, precision, runs, iterations, mean best length, best length,"
+                + " mean seconds, tours/s, estimated MB");
+
+        Problem problem = Problem.load(file, new ColonyOptions());
+
+        for (String algorithm : new String[] {"ACS", "EAS"}) {
+            for (ColonyOptions.Precision precision : ColonyOptions.Precision.values()) {
+                double lengthSum = 0;
+                double best = Double.MAX_VALUE;
+                double seconds = 0;
+                ColonyOptions options = null;
+
+                for (int run = -1; run < runs; run++) {
+                    options = new ColonyOptions().setThreads(threads).setPrecision(precision)
+                            .setSeed(Math.max(run, 0) + 1);
+                    Solver solver = algorithm.equals("ACS")
+                            ? new ACS(problem, DEFAULT_ANTS, numIter, 1, 3.5, 0.1, 0.9, 0.1, 1, 0, options)
+                            : new EAS(problem, DEFAULT_ANTS, numIter, 1, 3.5, 0.1, 20, 1, 0, options);
+                    long start = System.nanoTime();
+                    double length = solver.solve();
+                    if (run < 0) {
+                        continue;
+                    }
+                    seconds += (System.nanoTime() - start) / 1e9;
+                    lengthSum += length;
+                    best = Math.min(best, length);
+                }
+
+                long bytes = SweepScheduler.estimateBytes(problem.getNumCities(), DEFAULT_ANTS, options);
+                System.out.println(algorithm + ", " + precision + ", " + runs + ", " + numIter + ", "
+                        + lengthSum / runs + ", " + best + ", " + seconds / runs + ", "
+                        + (double) runs * numIter * DEFAULT_ANTS / seconds + ", " + bytes / (1 << 20));
+            }
+        }
+    }
+
+    //tour quality for the same wall-clock time: one colony with all the ants
+    //walking on every core, against islands of DEFAULT_ANTS ants each in a
+    //ring and fully connected, with each update rule
+    private static void islands(String file, double optLength, int islands, int interval, double seconds) {
+        System.out.println("algorithm, model, update, colonies, ants each, iterations, best length, ratio,"
+                + " tours sent, tours adopted");
+
+        Problem problem = Problem.load(file, new ColonyOptions());
+        long millis = (long) (seconds * 1000);
+
+        for (String algorithm : new String[] {"ACS", "EAS"}) {
+            Solver single = createColony(algorithm, problem, DEFAULT_ANTS * islands, new ColonyOptions()
+                    .setSeed(1).setThreads(islands).setTimeLimitMillis(millis));
+            double length = single.solve();
+            System.out.println(algorithm + ", single, -, 1, " + DEFAULT_ANTS * islands + ", "
+                    + single.getIterationsRun() + ", " + length + ", " + length / optLength + ", 0, 0");
+
+            for (IslandModel.Topology topology : IslandModel.Topology.values()) {
+                for (IslandModel.Update update : IslandModel.Update.values()) {
+                    List<Solver> colonies = new ArrayList<Solver>(islands);
+                    for (int i = 0; i < islands; i++) {
+                        colonies.add(createColony(algorithm, problem, DEFAULT_ANTS, new ColonyOptions()
+                                .setSeed(i + 1).setTimeLimitMillis(millis)));
+                    }
+                    IslandModel model = new IslandModel(colonies, interval, topology, update);
+                    length = model.solve();
+                    int iterations = 0;
+                    for (Solver colony : colonies) {
+                        iterations += colony.getIterationsRun();
+                    }
+                    System.out.println(algorithm + ", " + topology + ", " + update + ", " + islands + ", "
+                            + DEFAULT_ANTS + ", " + iterations + ", " + length + ", " + length / optLength + ", "
+                            + model.getToursSent() + ", " + model.getToursAdopted());
+                }
+            }
+        }
+    }
+
+    //a coordinator here and workers in their own JVMs on localhost, with the
+    //first worker killed half way through to check the others carry on
+    private static void distributed(String file, double optLength, int workers, double seconds,
+            String algorithm) {
+        System.out.println("algorithm, workers, seconds, workers done, workers lost, best length, ratio");
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<Process>(workers);
+        Problem problem = Problem.load(file, new ColonyOptions().setLowMemory(true));
+        try (Coordinator coordinator = Coordinator.start(0, problem)) {
+            for (int i = 0; i < workers; i++) {
+                List<String> command = new ArrayList<String>();
+                command.add(java);
+                command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add("aco.Worker");
+                command.add("localhost:" + coordinator.getPort());
+                command.add(file);
+                command.add(algorithm);
+                command.add(String.valueOf(i + 1));
+                command.add(String.valueOf(seconds));
+                processes.add(new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT).start());
+            }
+
+            Thread.sleep((long) (seconds * 500));
+            if (workers > 1) {
+                processes.get(0).destroyForcibly();
+            }
+            coordinator.awaitWorkers(workers, 0);
+
+            double best = coordinator.getBestTourLength();
+            System.out.println(algorithm + ", " + workers + ", " + seconds + ", " + coordinator.getWorkersDone()
+                    + ", " + coordinator.getWorkersLost() + ", " + best + ", " + best / optLength);
+        } catch (IOException e) {
+            System.out.println("Could not run the workers: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    //save and reopen: an unseeded colony snapshots itself once, half way, and
+    //is closed; a colony resumed from the file must end exactly where an
+    //uninterrupted run on the same seed ends
+    private static void checkpoint(String file, int numIter) {
+        System.out.println("algorithm, saved at, file bytes, resumed at, straight length, resumed length, same");
+
+        Problem problem = Problem.load(file, new ColonyOptions());
+        Path snapshot = null;
+        try {
+            snapshot = Files.createTempFile("aco-checkpoint", ".bin");
+            for (String algorithm : new String[] {"ACS", "EAS"}) {
+                int half = numIter / 2;
+                Solver saved = createColony(algorithm, problem, DEFAULT_ANTS, numIter, new ColonyOptions()
+                        .setCheckpointFile(snapshot).setCheckpointInterval(half));
+                for (int i = 0; i < half; i++) {
+                    saved.step();
+                }
+                saved.close();
+                long bytes = Files.size(snapshot);
+
+                Solver resumed = createColony(algorithm, problem, DEFAULT_ANTS, numIter, new ColonyOptions()
+                        .setCheckpointFile(snapshot).setResume(true));
+                int resumedAt = resumed.getIterationsRun();
+                double resumedLength = resumed.solve();
+                double straight = createColony(algorithm, problem, DEFAULT_ANTS, numIter, new ColonyOptions()
+                        .setSeed(saved.getSeed())).solve();
+
+                System.out.println(algorithm + ", " + half + ", " + bytes + ", " + resumedAt + ", " + straight
+                        + ", " + resumedLength + ", " + (resumedAt == half && straight == resumedLength));
+            }
+        } catch (IOException e) {
+            System.out.println("Could not use a snapshot file: " + e);
+        } finally {
+            if (snapshot != null) {
+                snapshot.toFile().delete();
+            }
+        }
+    }
+
+    //a colony with the rule of thumb parameters that runs until its time limit
+    private static Solver createColony(String algorithm, Problem problem, int numAnts, ColonyOptions options) {
+        return createColony(algorithm, problem, numAnts, Integer.MAX_VALUE, options);
+    }
+
+    //a colony with the rule of thumb parameters that runs numIter iterations
+    private static Solver createColony(String algorithm, Problem problem, int numAnts, int numIter,
+            ColonyOptions options) {
+        return algorithm.equals("ACS")
+                ? new ACS(problem, numAnts, numIter, 1, 3.5, 0.1, 0.9, 0.1, 1, 0, options)
+                : new EAS(problem, numAnts, numIter, 1, 3.5, 0.1, 20, 1, 0, options);
+    }
+
+    //times the scalar and vector kernels on rows as long as those of 2000 to
+    //6000 city instances, each for about millis per kernel and length
+    private static void kernels(int millis) {
+        Kernels.Impl scalar = Kernels.scalar();
+        Kernels.Impl vector = Kernels.vector();
+        if (vector == null) {
+            System.out.println("# vector kernels not available, compile vector/ and run with --add-modules jdk.incubator.vector");
+        }
+        System.out.println("kernel, row length, scalar ns, vector ns, speedup");
+
+        Random random = new Random(1);
+        for (int length = 2000; length <= 6000; length += 1000) {
+            double[] a = new double[length];
+            double[] b = new double[length];
+            double[] out = new double[length];
+            for (int i = 0; i < length; i++) {
+                a[i] = random.nextDouble();
+                b[i] = random.nextDouble();
+            }
+
+            for (String kernel : new String[] {"scale", "multiply", "sum", "argMax"}) {
+                double scalarNanos = timeKernel(scalar, kernel, a, b, out, millis);
+                if (vector == null) {
+                    System.out.println(kernel + ", " + length + ", " + scalarNanos + ", , ");
+                    continue;
+                }
+                double vectorNanos = timeKernel(vector, kernel, a, b, out, millis);
+                System.out.println(kernel + ", " + length + ", " + scalarNanos + ", " + vectorNanos + ", "
+                        + scalarNanos / vectorNanos);
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    //average nanoseconds per call of one kernel over the whole of a, after a
+    //warm up of the same length
+    private static double timeKernel(Kernels.Impl impl, String kernel, double[] a, double[] b, double[] out,
+            int millis) {
+        runKernel(impl, kernel, a, b, out, 20000);
+
+        long budget = millis * 1000000L;
+        long calls = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            runKernel(impl, kernel, a, b, out, 1000);
+            calls += 1000;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budget);
+        return (double) elapsed / calls;
+    }
+
+    //calls one kernel times times
+    private static void runKernel(Kernels.Impl impl, String kernel, double[] a, double[] b, double[] out,
+            int times) {
+        double result = 0;
+        for (int t = 0; t < times; t++) {
+            switch (kernel) {
+                case "scale":
+                    //halving then doubling keeps the values from running off to zero
+                    impl.scale(a, 0, a.length, (t & 1) == 0 ? 0.5 : 2.0);
+                    break;
+                case "multiply":
+                    impl.multiply(a, b, out, 0, a.length);
+                    result += out[t % out.length];
+                    break;
+                case "sum":
+                    result += impl.sum(a, 0, a.length);
+                    break;
+                default:
+                    result += impl.argMax(a, 0, a.length);
+            }
+        }
+        sink += result;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * The average lambda branching factor of a colony's pheromone: for every
+ * city, the number of its edges whose pheromone is at least
+ * min + lambda * (max - min) of that city's edges, averaged over the cities.
+ * Early on every edge looks alike and the factor is high; once the colony has
+ * settled on one tour it approaches 2 and new iterations rarely find anything.
+ *
+ * Edges are those of the candidate lists (all edges without them). The count
+ * only changes for a city when one of its edges gets a deposit or is worn, so
+ * the colony reports those edges and only their cities are counted again;
+ * evaporation scales every edge alike and leaves the counts as they are.
+ */
+package aco;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class BranchingFactor {
+
+    private final PheromoneMatrix pheromone;
+    private final CandidateLists candidates;
+    private final int numCities;
+    private final double lambda;
+
+    //strong edges of every city, their total, and the cities to count again
+    private final int[] counts;
+    private long total;
+    private final boolean[] changed;
+
+    public BranchingFactor(PheromoneMatrix pheromone, CandidateLists candidates, double lambda) {
+        this.pheromone = pheromone;
+        this.candidates = candidates;
+        this.numCities = pheromone.getNumCities();
+        this.lambda = lambda;
+        this.counts = new int[numCities];
+        this.changed = new boolean[numCities];
+        changedAll();
+    }
+
+    //notes that the pheromone on the edge between cityA and cityB changed.
+    //Safe to call from several threads at once, as long as the factor is
+    //only read after they are done
+    public void changed(int cityA, int cityB) {
+        changed[cityA] = true;
+        changed[cityB] = true;
+    }
+
+    //notes that the pheromone may have changed anywhere
+    public void changedAll() {
+        Arrays.fill(changed, true);
+    }
+
+    //the average branching factor, counting the changed cities again
+    public double get() {
+        for (int city = 0; city < numCities; city++) {
+            if (changed[city]) {
+                changed[city] = false;
+                int count = count(city);
+                total += count - counts[city];
+                counts[city] = count;
+            }
+        }
+        return (double) total / numCities;
+    }
+
+    //strong edges of one city
+    private int count(int city) {
+        int edges = candidates != null ? candidates.size() : numCities;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int e = 0; e < edges; e++) {
+            int dest = dest(city, e);
+            if (dest != city) {
+                double level = level(city, e, dest);
+                min = Math.min(min, level);
+                max = Math.max(max, level);
+            }
+        }
+
+        double threshold = min + lambda * (max - min);
+        int count = 0;
+        for (int e = 0; e < edges; e++) {
+            int dest = dest(city, e);
+            if (dest != city && level(city, e, dest) >= threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    //the e-th edge of city: its e-th candidate, or city e without lists
+    private int dest(int city, int e) {
+        return candidates != null ? candidates.get(city, e) : e;
+    }
+
+    //relative pheromone of an edge; the shared scale does not change the count
+    private double level(int city, int e, int dest) {
+        return candidates != null ? pheromone.getRelativeCandidate(city, e, dest)
+                : pheromone.getRelative(city, dest);
+    }
+
+}
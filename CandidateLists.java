@@ -0,0 +1,167 @@
+/*
+ * For every city, keeps the indices of its nearest neighbours sorted from
+ * closest to furthest. Ants only look at these candidates when picking their
+ * next city, and fall back to the full list of unvisited cities only when every
+ * candidate has already been visited.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class CandidateLists {
+
+    private final int numCities;
+    private final int size;
+    private final int[] neighbours;
+
+    //distances to the neighbours kept so far for the city being built
+    private final double[] bestLengths;
+
+    //builds a list of the listSize nearest neighbours of every city by looking
+    //at every other city (O(n^2), works for any distance)
+    public CandidateLists(DistanceMatrix distances, int listSize) {
+        numCities = distances.getNumCities();
+        size = Math.max(0, Math.min(listSize, numCities - 1));
+        neighbours = new int[numCities * size];
+        bestLengths = new double[size];
+
+        for (int city = 0; city < numCities; city++) {
+            int found = 0;
+            for (int other = 0; other < numCities; other++) {
+                if (other != city) {
+                    found = offer(city, found, other, distances.get(city, other));
+                }
+            }
+        }
+    }
+
+    //builds the same lists from the city coordinates using a uniform grid, so
+    //only the cells around each city are searched (about O(n * listSize)).
+    //Used when there is no distance matrix to scan.
+    public CandidateLists(City[] cities, int listSize) {
+        numCities = cities.length;
+        size = Math.max(0, Math.min(listSize, numCities - 1));
+        neighbours = new int[numCities * size];
+        bestLengths = new double[size];
+        if (size == 0) {
+            return;
+        }
+
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (City city : cities) {
+            minX = Math.min(minX, city.getX());
+            minY = Math.min(minY, city.getY());
+            maxX = Math.max(maxX, city.getX());
+            maxY = Math.max(maxY, city.getY());
+        }
+
+        //about two cities per cell
+        int cellsPerSide = Math.max(1, (int) Math.ceil(Math.sqrt(numCities / 2.0)));
+        double cellSize = Math.max(maxX - minX, maxY - minY) / cellsPerSide;
+        if (cellSize <= 0) {
+            cellSize = 1;
+        }
+
+        //counting sort the cities by cell
+        int numCells = cellsPerSide * cellsPerSide;
+        int[] cellOf = new int[numCities];
+        int[] cellStart = new int[numCells + 1];
+        for (int i = 0; i < numCities; i++) {
+            int cx = Math.min(cellsPerSide - 1, (int) ((cities[i].getX() - minX) / cellSize));
+            int cy = Math.min(cellsPerSide - 1, (int) ((cities[i].getY() - minY) / cellSize));
+            cellOf[i] = cy * cellsPerSide + cx;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int cell = 0; cell < numCells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        int[] next = new int[numCells];
+        System.arraycopy(cellStart, 0, next, 0, numCells);
+        int[] byCell = new int[numCities];
+        for (int i = 0; i < numCities; i++) {
+            byCell[next[cellOf[i]]++] = i;
+        }
+
+        for (int city = 0; city < numCities; city++) {
+            int cx = cellOf[city] % cellsPerSide;
+            int cy = cellOf[city] / cellsPerSide;
+            int found = 0;
+
+            //search square rings of cells until nothing further out can be closer
+            for (int ring = 0; ring < cellsPerSide; ring++) {
+                for (int y = cy - ring; y <= cy + ring; y++) {
+                    if (y < 0 || y >= cellsPerSide) {
+                        continue;
+                    }
+                    boolean edgeRow = y == cy - ring || y == cy + ring;
+                    int step = edgeRow ? 1 : 2 * ring;
+                    for (int x = cx - ring; x <= cx + ring; x += Math.max(1, step)) {
+                        if (x < 0 || x >= cellsPerSide) {
+                            continue;
+                        }
+                        int cell = y * cellsPerSide + x;
+                        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                            int other = byCell[i];
+                            if (other != city) {
+                                found = offer(city, found, other, DistanceMatrix.euclidean(cities[city], cities[other]));
+                            }
+                        }
+                    }
+                }
+
+                //every city outside this ring is at least ring * cellSize away
+                if (found == size && bestLengths[size - 1] <= ring * cellSize) {
+                    break;
+                }
+            }
+        }
+    }
+
+    //insertion sorts other into the list of city if it is closer than the
+    //furthest neighbour kept so far; returns the new number of neighbours kept
+    private int offer(int city, int found, int other, double length) {
+        int row = city * size;
+
+        //list is full and this city is no closer than the furthest kept
+        if (found == size && (size == 0 || length >= bestLengths[size - 1])) {
+            return found;
+        }
+
+        //insertion sort the new neighbour into place
+        int pos = found < size ? found++ : size - 1;
+        while (pos > 0 && bestLengths[pos - 1] > length) {
+            bestLengths[pos] = bestLengths[pos - 1];
+            neighbours[row + pos] = neighbours[row + pos - 1];
+            pos--;
+        }
+        bestLengths[pos] = length;
+        neighbours[row + pos] = other;
+        return found;
+    }
+
+    //returns the rank-th nearest neighbour of city (rank 0 is the closest)
+    public int get(int city, int rank) {
+        return neighbours[city * size + rank];
+    }
+
+    //number of candidates kept for each city
+    public int size() {
+        return size;
+    }
+
+    //getter for number of cities
+    public int getNumCities() {
+        return numCities;
+    }
+
+    //approximate heap used by the lists, in bytes
+    public long getFootprint() {
+        return 4L * neighbours.length;
+    }
+
+}
@@ -0,0 +1,332 @@
+/*
+ * Snapshots of a running colony in a memory-mapped file, so a long run can be
+ * stopped and picked up again later. A snapshot holds what a colony cannot
+ * work out again from its Problem: the pheromone cells and their shared scale,
+ * the best tour and its length, the number of iterations run, the time spent
+ * and the master seed. The ants' generators are reseeded from the master seed
+ * and the iteration number at the start of every iteration, so those two are
+ * all the random state there is, and a resumed run carries on exactly as the
+ * uninterrupted one would have.
+ *
+ * The file has a one page header and two slots. A snapshot is copied into the
+ * slot the header does not point at, on the colony's thread (a memory copy),
+ * and a background thread then forces it to disk and only then points the
+ * header at it. Writing to the disk overlaps with the next iterations, and a
+ * crash at any time leaves the last complete snapshot in place.
+ */
+package aco;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x41434F4B;
+    private static final int VERSION = 1;
+    private static final int PAGE = 4096;
+    //largest piece of the file mapped at once (a mapping is limited to 2 GB)
+    private static final long CHUNK = 1L << 30;
+    //bytes before the tour in a slot
+    private static final int SLOT_FIELDS = 48;
+    //bytes of the algorithm name in the header
+    private static final int NAME_BYTES = 8;
+    //where the header keeps the active slot and its number
+    private static final int ACTIVE_OFFSET = 28;
+    private static final int SEQUENCE_OFFSET = 32;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int numCities;
+    private final int cellBytes;
+    private final int cellCount;
+    private final long cellsOffset;
+    private final long slotBytes;
+
+    //both slots, mapped the first time they are used
+    private final MappedByteBuffer[][] slots = new MappedByteBuffer[2][];
+
+    //slot the header points at (-1 before the first snapshot) and its number
+    private int activeSlot;
+    private long sequence;
+
+    //the background flush of the last snapshot, and what it threw, if anything
+    private Thread flusher;
+    private volatile RuntimeException flushError;
+
+    //what restore() read back
+    private long seed;
+    private int iterationsRun;
+    private double bestTourLength;
+    private long elapsedNanos;
+
+    /**
+     * Opens the snapshot file for a colony of the given algorithm on numCities
+     * cities with the given pheromone storage. With resume set an existing
+     * file must have been written for the same kind of colony, and its last
+     * snapshot can be restored; otherwise the file is created or started over.
+     */
+    public Checkpoint(Path file, String algorithm, int numCities, PheromoneMatrix pheromone, boolean resume)
+            throws IOException {
+        this.file = file;
+        this.numCities = numCities;
+        this.cellBytes = pheromone.getCellBytes();
+        this.cellCount = pheromone.getCellCount();
+        this.cellsOffset = align8(SLOT_FIELDS + 4L * (numCities + 1));
+        this.slotBytes = alignPage(cellsOffset + (long) cellBytes * cellCount);
+
+        byte[] name = nameBytes(algorithm);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean existing = resume && channel.size() > 0;
+            if (existing && !matches(name)) {
+                throw new IllegalStateException("Checkpoint " + file + " was not written for this colony");
+            }
+
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, PAGE);
+            if (existing) {
+                activeSlot = header.getInt(ACTIVE_OFFSET);
+                sequence = header.getLong(SEQUENCE_OFFSET);
+            } else {
+                //a fresh file: lay out the header, with no snapshot in it yet
+                channel.truncate(PAGE);
+                header.putInt(MAGIC).putInt(VERSION).put(name);
+                header.putInt(numCities).putInt(cellBytes).putInt(cellCount);
+                activeSlot = -1;
+                sequence = 0;
+                writeActive();
+                header.force();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    //true if the file already holds the header of a colony like this one. The
+    //slots are mapped (and the file grown) only when first written, so a file
+    //with one snapshot ends after slot 0; only the slot the header points at
+    //has to be there
+    private boolean matches(byte[] name) throws IOException {
+        long size = channel.size();
+        if (size < PAGE) {
+            return false;
+        }
+        MappedByteBuffer existing = channel.map(FileChannel.MapMode.READ_ONLY, 0, PAGE);
+        byte[] existingName = new byte[NAME_BYTES];
+        if (existing.getInt() != MAGIC || existing.getInt() != VERSION) {
+            return false;
+        }
+        existing.get(existingName);
+        if (!Arrays.equals(existingName, name) || existing.getInt() != numCities
+                || existing.getInt() != cellBytes || existing.getInt() != cellCount) {
+            return false;
+        }
+        int active = existing.getInt(ACTIVE_OFFSET);
+        return active < 0 || (active <= 1 && size >= PAGE + (active + 1) * slotBytes);
+    }
+
+    //true if the file holds a complete snapshot
+    public boolean hasSnapshot() {
+        return activeSlot >= 0;
+    }
+
+    /**
+     * Loads the last complete snapshot into pheromone and bestTour and keeps
+     * the rest of it for the getters. Returns false if there is none yet.
+     */
+    public boolean restore(PheromoneMatrix pheromone, int[] bestTour) throws IOException {
+        if (activeSlot < 0) {
+            return false;
+        }
+        MappedByteBuffer[] slot = slot(activeSlot);
+        ByteBuffer fields = slot[0].duplicate();
+        fields.getLong();
+        seed = fields.getLong();
+        iterationsRun = fields.getInt();
+        int rescales = fields.getInt();
+        bestTourLength = fields.getDouble();
+        double scale = fields.getDouble();
+        elapsedNanos = fields.getLong();
+        fields.asIntBuffer().get(bestTour, 0, numCities + 1);
+
+        long offset = cellsOffset;
+        int done = 0;
+        while (done < cellCount) {
+            ByteBuffer cells = at(slot, offset);
+            int count = Math.min(cellCount - done, cells.remaining() / cellBytes);
+            pheromone.readCells(cells, done, count);
+            done += count;
+            offset += (long) count * cellBytes;
+        }
+        pheromone.restoreScale(scale, rescales);
+        return true;
+    }
+
+    /**
+     * Takes a snapshot of the colony. The cells and the tour are copied into
+     * the spare slot right away, so the colony may change them as soon as this
+     * returns; making the copy durable happens in the background. If the last
+     * snapshot is still being flushed, this waits for it first.
+     */
+    public void save(long seed, int iterationsRun, double bestTourLength, long elapsedNanos, int[] bestTour,
+            PheromoneMatrix pheromone) throws IOException {
+        awaitFlush();
+
+        int target = activeSlot == 0 ? 1 : 0;
+        long number = sequence + 1;
+        MappedByteBuffer[] slot = slot(target);
+
+        ByteBuffer fields = slot[0].duplicate();
+        fields.putLong(number);
+        fields.putLong(seed);
+        fields.putInt(iterationsRun);
+        fields.putInt(pheromone.getRescales());
+        fields.putDouble(bestTourLength);
+        fields.putDouble(pheromone.getScale());
+        fields.putLong(elapsedNanos);
+        fields.asIntBuffer().put(bestTour, 0, numCities + 1);
+
+        long offset = cellsOffset;
+        int done = 0;
+        while (done < cellCount) {
+            ByteBuffer cells = at(slot, offset);
+            int count = Math.min(cellCount - done, cells.remaining() / cellBytes);
+            pheromone.writeCells(cells, done, count);
+            done += count;
+            offset += (long) count * cellBytes;
+        }
+
+        flusher = new Thread(() -> flush(slot, target, number), "checkpoint-" + file.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    //waits until the last snapshot is on disk, rethrowing any error it hit
+    public void awaitFlush() {
+        if (flusher != null) {
+            boolean interrupted = false;
+            while (flusher.isAlive()) {
+                try {
+                    flusher.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            flusher = null;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        RuntimeException error = flushError;
+        if (error != null) {
+            flushError = null;
+            throw error;
+        }
+    }
+
+    //waits for the last snapshot and closes the file
+    public void close() throws IOException {
+        try {
+            awaitFlush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    //forces a finished slot to disk, then makes the header point at it
+    private void flush(MappedByteBuffer[] slot, int target, long number) {
+        try {
+            for (MappedByteBuffer chunk : slot) {
+                chunk.force();
+            }
+            activeSlot = target;
+            sequence = number;
+            writeActive();
+            header.force();
+        } catch (RuntimeException e) {
+            flushError = e;
+        }
+    }
+
+    //writes the active slot and its number into the header
+    private void writeActive() {
+        header.putInt(ACTIVE_OFFSET, activeSlot);
+        header.putLong(SEQUENCE_OFFSET, sequence);
+    }
+
+    //one slot, mapped in pieces of at most CHUNK bytes
+    private MappedByteBuffer[] slot(int slot) throws IOException {
+        if (slots[slot] == null) {
+            long start = PAGE + slot * slotBytes;
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((slotBytes + CHUNK - 1) / CHUNK)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = i * CHUNK;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start + offset,
+                        Math.min(CHUNK, slotBytes - offset));
+            }
+            slots[slot] = chunks;
+        }
+        return slots[slot];
+    }
+
+    //a view of the slot from offset to the end of the piece offset is in.
+    //CHUNK and the start of the cells are multiples of 8, so no cell is split
+    private static ByteBuffer at(MappedByteBuffer[] slot, long offset) {
+        ByteBuffer view = slot[(int) (offset / CHUNK)].duplicate();
+        view.position((int) (offset % CHUNK));
+        return view;
+    }
+
+    //the algorithm name as it is kept in the header, cut or padded to NAME_BYTES
+    private static byte[] nameBytes(String algorithm) {
+        return Arrays.copyOf(algorithm.getBytes(StandardCharsets.US_ASCII), NAME_BYTES);
+    }
+
+    //rounds a byte count up to a multiple of 8
+    private static long align8(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    //rounds a byte count up to a whole number of pages
+    private static long alignPage(long bytes) {
+        return (bytes + PAGE - 1) / PAGE * PAGE;
+    }
+
+    //master seed of the restored run
+    public long getSeed() {
+        return seed;
+    }
+
+    //iterations the restored run had finished
+    public int getIterationsRun() {
+        return iterationsRun;
+    }
+
+    //best tour length of the restored run
+    public double getBestTourLength() {
+        return bestTourLength;
+    }
+
+    //time the restored run had spent solving, in nanoseconds
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    //path of the snapshot file
+    public Path getFile() {
+        return file;
+    }
+
+}
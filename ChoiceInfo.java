@@ -0,0 +1,223 @@
+/*
+ * Caches tau^alpha * eta^beta for every candidate edge so the ants can read the
+ * weight of an edge instead of calling Math.pow twice for it on every step.
+ * eta^beta never changes and is worked out once; the pheromone half is
+ * refreshed whenever the colony changes the pheromone on an edge. Edges that
+ * are not on a candidate list are worked out on the fly. The cache holds
+ * relative pheromone levels, so evaporation (which scales every edge alike)
+ * leaves it valid.
+ *
+ * In single precision both tables are floats. Ants only ever compare the
+ * weights of one city's candidates with each other, so every row is divided
+ * by its largest value before it is stored, which keeps the weights inside
+ * the float range whatever alpha, beta and the distances are.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class ChoiceInfo {
+
+    //shortest distance used for eta, so duplicate cities don't divide by zero
+    static final double MIN_LENGTH = 1e-6;
+
+    private final int numCities;
+    private final int listSize;
+    private final DistanceMatrix distances;
+    private final PheromoneMatrix pheromone;
+    private final CandidateLists candidates;
+    private final FastPow pheroPower;
+    private final FastPow heuristicPower;
+
+    //eta^beta and tau^alpha * eta^beta, one slot per candidate edge
+    private final double[] heuristic;
+    private final double[] choice;
+
+    //the same in single precision (the double tables are null then), with the
+    //number every choice row was divided by and room to work out one row
+    private final float[] heuristicFloat;
+    private final float[] choiceFloat;
+    private final double[] rowDivisor;
+    private final double[] rowValues;
+
+    //optional alias tables over the candidate weights, rebuilt by update()
+    private AliasTable aliasTable;
+
+    //builds the cache for the given colony state (candidates may be null)
+    public ChoiceInfo(DistanceMatrix distances, PheromoneMatrix pheromone, CandidateLists candidates,
+            double alpha, double beta) {
+        this(distances, pheromone, candidates, alpha, beta, false);
+    }
+
+    //same as above, keeping the tables in floats if singlePrecision is set
+    public ChoiceInfo(DistanceMatrix distances, PheromoneMatrix pheromone, CandidateLists candidates,
+            double alpha, double beta, boolean singlePrecision) {
+        this.numCities = distances.getNumCities();
+        this.listSize = candidates == null ? 0 : candidates.size();
+        this.distances = distances;
+        this.pheromone = pheromone;
+        this.candidates = candidates;
+        this.pheroPower = new FastPow(alpha);
+        this.heuristicPower = new FastPow(beta);
+
+        if (singlePrecision) {
+            heuristic = null;
+            choice = null;
+            heuristicFloat = new float[numCities * listSize];
+            choiceFloat = new float[numCities * listSize];
+            rowDivisor = new double[numCities];
+            rowValues = new double[listSize];
+
+            //every row divided by its largest eta^beta
+            for (int city = 0; city < numCities; city++) {
+                double largest = 0.0;
+                for (int rank = 0; rank < listSize; rank++) {
+                    rowValues[rank] = calcHeuristic(city, candidates.get(city, rank));
+                    largest = Math.max(largest, rowValues[rank]);
+                }
+                double divisor = usableDivisor(largest);
+                for (int rank = 0; rank < listSize; rank++) {
+                    heuristicFloat[city * listSize + rank] = PheromoneMatrix.toCell(rowValues[rank] / divisor);
+                }
+            }
+        } else {
+            heuristic = new double[numCities * listSize];
+            choice = new double[numCities * listSize];
+            heuristicFloat = null;
+            choiceFloat = null;
+            rowDivisor = null;
+            rowValues = null;
+
+            for (int city = 0; city < numCities; city++) {
+                for (int rank = 0; rank < listSize; rank++) {
+                    heuristic[city * listSize + rank] = calcHeuristic(city, candidates.get(city, rank));
+                }
+            }
+        }
+
+        update();
+    }
+
+    //recomputes the whole table from the current pheromone levels
+    public void update() {
+        if (choiceFloat != null) {
+            updateFloat();
+            return;
+        }
+
+        //the pheromone half first, then one pass multiplying in eta^beta
+        for (int city = 0; city < numCities; city++) {
+            int row = city * listSize;
+            for (int rank = 0; rank < listSize; rank++) {
+                int dest = candidates.get(city, rank);
+                choice[row + rank] = pheroPower.apply(pheromone.getRelativeCandidate(city, rank, dest));
+            }
+        }
+        Kernels.multiply(choice, heuristic, choice, 0, choice.length);
+        if (aliasTable != null) {
+            aliasTable.build(this);
+        }
+    }
+
+    //update() in single precision: each row is worked out in doubles, then
+    //stored divided by its largest weight
+    private void updateFloat() {
+        for (int city = 0; city < numCities; city++) {
+            int row = city * listSize;
+            double largest = 0.0;
+            for (int rank = 0; rank < listSize; rank++) {
+                int dest = candidates.get(city, rank);
+                rowValues[rank] = pheroPower.apply(pheromone.getRelativeCandidate(city, rank, dest))
+                        * heuristicFloat[row + rank];
+                largest = Math.max(largest, rowValues[rank]);
+            }
+            double divisor = usableDivisor(largest);
+            rowDivisor[city] = divisor;
+            for (int rank = 0; rank < listSize; rank++) {
+                choiceFloat[row + rank] = PheromoneMatrix.toCell(rowValues[rank] / divisor);
+            }
+        }
+        if (aliasTable != null) {
+            aliasTable.build(this);
+        }
+    }
+
+    //largest, unless it is no use to divide by
+    private static double usableDivisor(double largest) {
+        return largest > 0.0 && largest < Double.POSITIVE_INFINITY ? largest : 1.0;
+    }
+
+    //keeps alias tables over the candidate weights, rebuilt on every full
+    //update(). Only for colonies that do not patch single edges with
+    //update(cityA, cityB), since that leaves the tables stale.
+    public void enableAliasTables() {
+        if (aliasTable == null && listSize > 0) {
+            aliasTable = new AliasTable(numCities, listSize);
+            aliasTable.build(this);
+        }
+    }
+
+    //alias tables over the candidate weights, or null if they are off
+    public AliasTable getAliasTable() {
+        return aliasTable;
+    }
+
+    //refreshes the cached value of the edge between cityA and cityB (both directions)
+    public void update(int cityA, int cityB) {
+        updateSlot(cityA, cityB);
+        updateSlot(cityB, cityA);
+    }
+
+    //refreshes source -> dest if dest is on the candidate list of source
+    private void updateSlot(int source, int dest) {
+        int row = source * listSize;
+        for (int rank = 0; rank < listSize; rank++) {
+            if (candidates.get(source, rank) == dest) {
+                double pheroPart = pheroPower.apply(pheromone.getRelativeCandidate(source, rank, dest));
+                if (choiceFloat != null) {
+                    //the row keeps the divisor of its last full update
+                    choiceFloat[row + rank] = PheromoneMatrix.toCell(
+                            pheroPart * heuristicFloat[row + rank] / rowDivisor[source]);
+                } else {
+                    choice[row + rank] = pheroPart * heuristic[row + rank];
+                }
+                return;
+            }
+        }
+    }
+
+    //cached tau^alpha * eta^beta of the rank-th candidate of city (in single
+    //precision up to a factor that is the same for the whole row)
+    public double get(int city, int rank) {
+        return choiceFloat != null ? choiceFloat[city * listSize + rank] : choice[city * listSize + rank];
+    }
+
+    //cached eta^beta of the rank-th candidate of city (in single precision up
+    //to a factor that is the same for the whole row)
+    public double getHeuristic(int city, int rank) {
+        return heuristicFloat != null ? heuristicFloat[city * listSize + rank] : heuristic[city * listSize + rank];
+    }
+
+    //true if the tables are floats
+    public boolean isSinglePrecision() {
+        return choiceFloat != null;
+    }
+
+    //approximate heap used by the tables, in bytes
+    public long getFootprint() {
+        return (choiceFloat != null ? 8L : 16L) * numCities * listSize;
+    }
+
+    //tau^alpha * eta^beta of any edge, worked out on the fly
+    public double calcEdgeData(int source, int dest) {
+        return pheroPower.apply(pheromone.getRelative(source, dest)) * calcHeuristic(source, dest);
+    }
+
+    //eta^beta of any edge, worked out on the fly
+    public double calcHeuristic(int source, int dest) {
+        return heuristicPower.apply(1 / Math.max(distances.get(source, dest), MIN_LENGTH));
+    }
+
+}
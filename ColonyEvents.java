@@ -0,0 +1,127 @@
+/*
+ * JDK Flight Recorder events of the colonies, under "ACO" in JDK Mission
+ * Control. Phase, Iteration and Improvement are on by default whenever a
+ * recording runs; Throughput (ant steps per second and how often the
+ * candidate lists ran dry) is off unless a recording's settings switch on
+ * aco.Throughput. Without a recording none of them costs more than a check
+ * per iteration; PhaseProfiler does the emitting.
+ */
+package aco;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public final class ColonyEvents {
+
+    private ColonyEvents() {
+    }
+
+    //one phase of one iteration
+    @Name("aco.Phase")
+    @Label("Colony Phase")
+    @Category("ACO")
+    @Description("Time one iteration spent in one phase of the colony")
+    public static final class Phase extends Event {
+
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Iteration")
+        int iteration;
+
+        @Label("Phase")
+        String phase;
+
+        //the same as the duration, except for phases done a bit at a time
+        //(the local pheromone update), where it is the sum of the pieces
+        @Label("Time In Phase")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        @Label("Calls")
+        int calls;
+    }
+
+    //one whole iteration
+    @Name("aco.Iteration")
+    @Label("Colony Iteration")
+    @Category("ACO")
+    public static final class Iteration extends Event {
+
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Iteration")
+        int iteration;
+
+        @Label("Best Length")
+        double bestLength;
+
+        @Label("Iteration Best Length")
+        double iterationBestLength;
+
+        @Label("Improved")
+        boolean improved;
+    }
+
+    //a new best tour
+    @Name("aco.Improvement")
+    @Label("Colony Improvement")
+    @Category("ACO")
+    public static final class Improvement extends Event {
+
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Iteration")
+        int iteration;
+
+        @Label("Previous Length")
+        @Description("Best length before this tour, NaN for the first tour of a run")
+        double previousLength;
+
+        @Label("Best Length")
+        double bestLength;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    //tour construction counters of one iteration
+    @Name("aco.Throughput")
+    @Label("Colony Throughput")
+    @Category("ACO")
+    @Enabled(false)
+    public static final class Throughput extends Event {
+
+        @Label("Algorithm")
+        String algorithm;
+
+        @Label("Iteration")
+        int iteration;
+
+        @Label("Ant Steps")
+        long antSteps;
+
+        @Label("Steps Per Second")
+        double stepsPerSecond;
+
+        @Label("Candidate Fallbacks")
+        @Description("Steps that found every candidate visited and looked at every unvisited city")
+        long fallbacks;
+
+        @Label("Fallback Rate")
+        double fallbackRate;
+    }
+
+}
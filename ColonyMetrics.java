@@ -0,0 +1,195 @@
+/*
+ * Live numbers of one colony run, for watching long solves without a
+ * profiler. The colony writes them once per iteration; readers (JMX clients
+ * and MetricsServer scrapes) may come from any thread and see each value as
+ * of some recent iteration. With ColonyOptions.setJmx the run appears as the
+ * MBean aco:type=Colony,name=<run>, and with ColonyOptions.setMetricsServer in
+ * that server's Prometheus output, from its first iteration until it is
+ * closed.
+ */
+package aco;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class ColonyMetrics implements ColonyMetricsMBean {
+
+    //numbers the runs of this JVM, to name them
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    private final String algorithm;
+    private final String run;
+    private final double optLength;
+    private final boolean jmx;
+    private final MetricsServer server;
+
+    private volatile long seed;
+    private volatile int iteration;
+    private volatile double bestLength = Double.MAX_VALUE;
+    private volatile double iterationBestLength = Double.MAX_VALUE;
+    private volatile long elapsedNanos;
+    private volatile long pheromoneBytes;
+    private volatile long choiceInfoBytes;
+    private volatile int lastImprovementIteration;
+
+    //name the MBean is registered under, null while it is not
+    private ObjectName objectName;
+    private boolean registered;
+
+    //metrics of a run of algorithm with the given seed and known optimum
+    //(0 if none), published as the options say
+    public ColonyMetrics(String algorithm, long seed, double optLength, ColonyOptions options) {
+        this.algorithm = algorithm;
+        this.run = algorithm.toLowerCase() + "-" + RUNS.incrementAndGet();
+        this.seed = seed;
+        this.optLength = optLength;
+        this.jmx = options.isJmx();
+        this.server = options.getMetricsServer();
+    }
+
+    //true if the options ask for metrics to be published anywhere
+    public static boolean isWanted(ColonyOptions options) {
+        return options.isJmx() || options.getMetricsServer() != null;
+    }
+
+    //publishes the metrics, unless they already are
+    public void register() {
+        if (registered) {
+            return;
+        }
+        if (jmx) {
+            try {
+                MBeanServer beans = ManagementFactory.getPlatformMBeanServer();
+                objectName = new ObjectName("aco:type=Colony,name=" + run);
+                beans.registerMBean(this, objectName);
+            } catch (JMException e) {
+                objectName = null;
+                throw new IllegalStateException("Could not register colony MBean " + run, e);
+            }
+        }
+        if (server != null) {
+            server.register(this);
+        }
+        registered = true;
+    }
+
+    //stops publishing the metrics
+    public void unregister() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        if (server != null) {
+            server.unregister(this);
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not unregister colony MBean " + run, e);
+            } finally {
+                objectName = null;
+            }
+        }
+    }
+
+    //records a finished iteration
+    public void update(long seed, int iteration, double bestLength, double iterationBestLength,
+            long elapsedNanos, long pheromoneBytes, long choiceInfoBytes) {
+        if (bestLength < this.bestLength) {
+            lastImprovementIteration = iteration;
+        }
+        this.seed = seed;
+        this.iterationBestLength = iterationBestLength;
+        this.bestLength = bestLength;
+        this.elapsedNanos = elapsedNanos;
+        this.pheromoneBytes = pheromoneBytes;
+        this.choiceInfoBytes = choiceInfoBytes;
+        this.iteration = iteration;
+    }
+
+    //name of the run, unique in this JVM
+    public String getRun() {
+        return run;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public int getIteration() {
+        return iteration;
+    }
+
+    @Override
+    public double getBestLength() {
+        return bestLength;
+    }
+
+    @Override
+    public double getIterationBestLength() {
+        return iterationBestLength;
+    }
+
+    @Override
+    public double getOptLength() {
+        return optLength;
+    }
+
+    @Override
+    public double getRatioToOpt() {
+        return optLength > 0 ? bestLength / optLength : Double.NaN;
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    @Override
+    public double getIterationsPerSecond() {
+        long nanos = elapsedNanos;
+        return nanos == 0 ? 0.0 : iteration * 1e9 / nanos;
+    }
+
+    @Override
+    public long getPheromoneBytes() {
+        return pheromoneBytes;
+    }
+
+    @Override
+    public long getChoiceInfoBytes() {
+        return choiceInfoBytes;
+    }
+
+    @Override
+    public int getLastImprovementIteration() {
+        return lastImprovementIteration;
+    }
+
+    @Override
+    public int getIterationsSinceImprovement() {
+        return iteration - lastImprovementIteration;
+    }
+
+    @Override
+    public double getIterationBestGap() {
+        double best = bestLength;
+        return iteration == 0 ? Double.NaN : iterationBestLength / best - 1.0;
+    }
+
+}
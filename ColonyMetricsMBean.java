@@ -0,0 +1,57 @@
+/*
+ * What a running colony shows through JMX, one MBean per run under
+ * aco:type=Colony. Lengths are in the instance's distance units and times in
+ * seconds.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public interface ColonyMetricsMBean {
+
+    //ACS or EAS
+    String getAlgorithm();
+
+    //master seed of the run
+    long getSeed();
+
+    //iterations finished so far
+    int getIteration();
+
+    //best tour length so far
+    double getBestLength();
+
+    //best length of the last iteration's ants
+    double getIterationBestLength();
+
+    //known optimum the run was given, 0 if none
+    double getOptLength();
+
+    //best length over the optimum, NaN without an optimum
+    double getRatioToOpt();
+
+    //seconds the run has been solving
+    double getElapsedSeconds();
+
+    //iterations per second since the run started
+    double getIterationsPerSecond();
+
+    //bytes of heap held by the pheromone matrix
+    long getPheromoneBytes();
+
+    //bytes of heap held by the choice info cached from the pheromone
+    long getChoiceInfoBytes();
+
+    //iteration that last found a better tour
+    int getLastImprovementIteration();
+
+    //iterations since the best tour last improved
+    int getIterationsSinceImprovement();
+
+    //how far the last iteration's best was from the best so far, as a
+    //fraction of it; near 0 the ants keep finding the same tour
+    double getIterationBestGap();
+
+}
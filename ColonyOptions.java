@@ -0,0 +1,454 @@
+/*
+ * Holds the tuning knobs shared by ACS and EAS that are not part of the
+ * classic alpha/beta/rho parameter set. Every setting has a default, so
+ * new ColonyOptions() behaves like the original colonies apart from the
+ * speed-ups switched on by default.
+ */
+package aco;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class ColonyOptions {
+
+    public static final int DEFAULT_CANDIDATE_LIST_SIZE = 20;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 300000;
+    public static final double DEFAULT_BRANCHING_LAMBDA = 0.05;
+
+    //how ACS ants share the pheromone matrix when they walk on several threads
+    public enum AcsMode {
+        //every ant takes one step, then the local updates are applied, exactly
+        //like the serial colony (one fork/join per step)
+        LOCKSTEP,
+        //every ant walks its whole tour on its own, applying local updates with
+        //compare-and-set as it goes (one fork/join per iteration)
+        ASYNC
+    }
+
+    //how the pheromone and the cached edge weights are stored
+    public enum Precision {
+        //doubles, like the tour lengths
+        DOUBLE,
+        //floats: half the memory and bandwidth for the O(n^2) and O(n * k)
+        //tables. Tour lengths stay doubles; the distance matrix is floats in
+        //both modes, which holds TSPLIB's whole-number distances exactly.
+        FLOAT
+    }
+
+    //number of nearest neighbours ants look at before falling back to a full scan
+    //(0 turns candidate lists off)
+    private int candidateListSize = DEFAULT_CANDIDATE_LIST_SIZE;
+
+    //number of threads used to build ant tours (1 builds them one after another)
+    private int threads = 1;
+
+    //optional pool to build ant tours on instead of one owned by the colony
+    private ExecutorService executor;
+
+    //how parallel ACS ants apply their local updates
+    private AcsMode acsMode = AcsMode.LOCKSTEP;
+
+    //master seed every ant's generator is derived from (null picks one per run)
+    private Long seed;
+
+    //which generator the ants use
+    private RandomSource.Kind randomKind = RandomSource.Kind.XOSHIRO;
+
+    //keep only city coordinates and candidate-edge pheromone, so memory is
+    //O(n * k) instead of O(n^2); switched on by itself past MAX_DENSE_CITIES
+    private boolean lowMemory;
+
+    //EAS ants draw among their candidates from alias tables instead of a
+    //roulette wheel (ACS changes its weights every step, so it ignores this)
+    private boolean aliasTables;
+
+    //improver run on finished tours before the pheromone update
+    private LocalSearch.Kind localSearch = LocalSearch.Kind.NONE;
+
+    //run the improver on every ant's tour, or only on the best of each iteration
+    private boolean localSearchAllAnts = true;
+
+    //time one call to the improver may take, in milliseconds (0 for no limit)
+    private long localSearchMillis;
+
+    //storage of the pheromone, eta^beta and choice info
+    private Precision precision = Precision.DOUBLE;
+
+    //file the colony snapshots itself to (null for none), every how many
+    //iterations, and whether to pick up from the snapshot already in it
+    private Path checkpointFile;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private boolean resume;
+
+    //directory Problem.load keeps binary copies of instances in, null for
+    //none; -Daco.cacheDir sets it for every colony
+    private Path instanceCacheDir = System.getProperty("aco.cacheDir") == null ? null
+            : Paths.get(System.getProperty("aco.cacheDir"));
+
+    //told about every finished iteration, on a thread of their own
+    private final List<IterationListener> iterationListeners = new ArrayList<IterationListener>();
+
+    //when to stop besides the iteration limit and the percentage of the
+    //optimum; 0 turns each of them off
+    private long timeLimitMillis = DEFAULT_TIME_LIMIT_MILLIS;
+    private long cpuLimitMillis;
+    private double targetLength;
+    private int maxIterationsWithoutImprovement;
+    private double minBranchingFactor;
+    private double branchingLambda = DEFAULT_BRANCHING_LAMBDA;
+
+    //publish the run's live metrics as an MBean, and/or on a Prometheus endpoint
+    private boolean jmx;
+    private MetricsServer metricsServer;
+
+    //getter for candidate list size
+    public int getCandidateListSize() {
+        return candidateListSize;
+    }
+
+    //setter for candidate list size
+    public ColonyOptions setCandidateListSize(int candidateListSize) {
+        if (candidateListSize < 0) {
+            throw new IllegalArgumentException("Candidate list size must not be negative: " + candidateListSize);
+        }
+        this.candidateListSize = candidateListSize;
+        return this;
+    }
+
+    //getter for number of construction threads
+    public int getThreads() {
+        return threads;
+    }
+
+    //setter for number of construction threads
+    public ColonyOptions setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    //getter for the shared construction pool, null if the colony makes its own
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    //setter for a shared construction pool; the colony never shuts it down
+    public ColonyOptions setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    //getter for the ACS walking mode
+    public AcsMode getAcsMode() {
+        return acsMode;
+    }
+
+    //setter for the ACS walking mode
+    public ColonyOptions setAcsMode(AcsMode acsMode) {
+        this.acsMode = acsMode;
+        return this;
+    }
+
+    //getter for the master seed, null if every run should pick its own
+    public Long getSeed() {
+        return seed;
+    }
+
+    //setter for the master seed; runs with the same seed and thread count
+    //(and, for ACS, not in ASYNC mode) build exactly the same tours
+    public ColonyOptions setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    //getter for the kind of generator
+    public RandomSource.Kind getRandomKind() {
+        return randomKind;
+    }
+
+    //setter for the kind of generator
+    public ColonyOptions setRandomKind(RandomSource.Kind randomKind) {
+        this.randomKind = randomKind;
+        return this;
+    }
+
+    //getter for the low memory switch
+    public boolean isLowMemory() {
+        return lowMemory;
+    }
+
+    //setter for the low memory switch
+    public ColonyOptions setLowMemory(boolean lowMemory) {
+        this.lowMemory = lowMemory;
+        return this;
+    }
+
+    //getter for the alias table switch
+    public boolean isAliasTables() {
+        return aliasTables;
+    }
+
+    //setter for the alias table switch
+    public ColonyOptions setAliasTables(boolean aliasTables) {
+        this.aliasTables = aliasTables;
+        return this;
+    }
+
+    //getter for the local search
+    public LocalSearch.Kind getLocalSearch() {
+        return localSearch;
+    }
+
+    //setter for the local search
+    public ColonyOptions setLocalSearch(LocalSearch.Kind localSearch) {
+        this.localSearch = localSearch;
+        return this;
+    }
+
+    //getter for whether every ant's tour is improved
+    public boolean isLocalSearchAllAnts() {
+        return localSearchAllAnts;
+    }
+
+    //setter for whether every ant's tour is improved (true, spread over the
+    //construction threads) or only the iteration's best one (false)
+    public ColonyOptions setLocalSearchAllAnts(boolean localSearchAllAnts) {
+        this.localSearchAllAnts = localSearchAllAnts;
+        return this;
+    }
+
+    //getter for the time budget of one local search call
+    public long getLocalSearchMillis() {
+        return localSearchMillis;
+    }
+
+    //setter for the time budget of one local search call (0 for no limit)
+    public ColonyOptions setLocalSearchMillis(long localSearchMillis) {
+        if (localSearchMillis < 0) {
+            throw new IllegalArgumentException("Time budget must not be negative: " + localSearchMillis);
+        }
+        this.localSearchMillis = localSearchMillis;
+        return this;
+    }
+
+    //getter for the storage precision
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    //setter for the storage precision
+    public ColonyOptions setPrecision(Precision precision) {
+        this.precision = precision;
+        return this;
+    }
+
+    //true if the pheromone and edge weights are kept in floats
+    public boolean isSinglePrecision() {
+        return precision == Precision.FLOAT;
+    }
+
+    //getter for the snapshot file
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    //setter for the snapshot file (null turns snapshots off)
+    public ColonyOptions setCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+        return this;
+    }
+
+    //getter for the number of iterations between snapshots
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    //setter for the number of iterations between snapshots; one is also taken
+    //when the colony stops
+    public ColonyOptions setCheckpointInterval(int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1: " + checkpointInterval);
+        }
+        this.checkpointInterval = checkpointInterval;
+        return this;
+    }
+
+    //getter for the resume switch
+    public boolean isResume() {
+        return resume;
+    }
+
+    //setter for the resume switch: if the snapshot file already holds a
+    //snapshot, the colony carries on from it instead of starting over
+    public ColonyOptions setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    //getter for the directory instances are cached in
+    public Path getInstanceCacheDir() {
+        return instanceCacheDir;
+    }
+
+    //setter for the directory Problem.load keeps binary copies of instances
+    //in, so later loads skip the parsing (null parses every time, which is
+    //the default unless -Daco.cacheDir is given)
+    public ColonyOptions setInstanceCacheDir(Path instanceCacheDir) {
+        this.instanceCacheDir = instanceCacheDir;
+        return this;
+    }
+
+    //registers a listener for the colony's iterations
+    public ColonyOptions addIterationListener(IterationListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Iteration listener must not be null");
+        }
+        iterationListeners.add(listener);
+        return this;
+    }
+
+    //getter for the iteration listeners
+    public List<IterationListener> getIterationListeners() {
+        return Collections.unmodifiableList(iterationListeners);
+    }
+
+    //getter for the wall-clock budget of a run
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+
+    //setter for the wall-clock budget of a run, counting the time before a
+    //resume (0 for no limit)
+    public ColonyOptions setTimeLimitMillis(long timeLimitMillis) {
+        if (timeLimitMillis < 0) {
+            throw new IllegalArgumentException("Time limit must not be negative: " + timeLimitMillis);
+        }
+        this.timeLimitMillis = timeLimitMillis;
+        return this;
+    }
+
+    //getter for the CPU budget of a run
+    public long getCpuLimitMillis() {
+        return cpuLimitMillis;
+    }
+
+    //setter for the CPU budget of a run: CPU time of the colony's own threads
+    //and pool jobs since the run's first step (0 for no limit)
+    public ColonyOptions setCpuLimitMillis(long cpuLimitMillis) {
+        if (cpuLimitMillis < 0) {
+            throw new IllegalArgumentException("CPU limit must not be negative: " + cpuLimitMillis);
+        }
+        this.cpuLimitMillis = cpuLimitMillis;
+        return this;
+    }
+
+    //getter for the target tour length
+    public double getTargetLength() {
+        return targetLength;
+    }
+
+    //setter for the target tour length: stop as soon as a tour this short is
+    //found, without needing the optimum (0 for none)
+    public ColonyOptions setTargetLength(double targetLength) {
+        if (!(targetLength >= 0)) {
+            throw new IllegalArgumentException("Target length must not be negative: " + targetLength);
+        }
+        this.targetLength = targetLength;
+        return this;
+    }
+
+    //getter for the improvement patience
+    public int getMaxIterationsWithoutImprovement() {
+        return maxIterationsWithoutImprovement;
+    }
+
+    //setter for the improvement patience: stop after this many iterations in
+    //a row without a better tour (0 for no limit)
+    public ColonyOptions setMaxIterationsWithoutImprovement(int maxIterationsWithoutImprovement) {
+        if (maxIterationsWithoutImprovement < 0) {
+            throw new IllegalArgumentException("Iterations without improvement must not be negative: "
+                    + maxIterationsWithoutImprovement);
+        }
+        this.maxIterationsWithoutImprovement = maxIterationsWithoutImprovement;
+        return this;
+    }
+
+    //getter for the stagnation threshold
+    public double getMinBranchingFactor() {
+        return minBranchingFactor;
+    }
+
+    //setter for the stagnation threshold: stop once the average lambda
+    //branching factor drops to this, after having been above it (2 means every
+    //city has kept about two strong edges, so the ants keep building the same
+    //tour; 0 for no check)
+    public ColonyOptions setMinBranchingFactor(double minBranchingFactor) {
+        if (!(minBranchingFactor >= 0)) {
+            throw new IllegalArgumentException("Branching factor must not be negative: " + minBranchingFactor);
+        }
+        this.minBranchingFactor = minBranchingFactor;
+        return this;
+    }
+
+    //getter for lambda of the branching factor
+    public double getBranchingLambda() {
+        return branchingLambda;
+    }
+
+    //setter for lambda of the branching factor: an edge counts as strong if
+    //its pheromone is at least this far from its city's weakest edge to its
+    //strongest
+    public ColonyOptions setBranchingLambda(double branchingLambda) {
+        if (!(branchingLambda > 0 && branchingLambda < 1)) {
+            throw new IllegalArgumentException("Branching lambda must be between 0 and 1: " + branchingLambda);
+        }
+        this.branchingLambda = branchingLambda;
+        return this;
+    }
+
+    //getter for the JMX switch
+    public boolean isJmx() {
+        return jmx;
+    }
+
+    //setter for the JMX switch: the run shows its live metrics as the MBean
+    //aco:type=Colony,name=<run> while it is running
+    public ColonyOptions setJmx(boolean jmx) {
+        this.jmx = jmx;
+        return this;
+    }
+
+    //getter for the Prometheus endpoint, null if none
+    public MetricsServer getMetricsServer() {
+        return metricsServer;
+    }
+
+    //setter for the Prometheus endpoint the run's live metrics are served on;
+    //several runs may share one (null for none)
+    public ColonyOptions setMetricsServer(MetricsServer metricsServer) {
+        this.metricsServer = metricsServer;
+        return this;
+    }
+
+    //returns the master seed, or a fresh one if none was set
+    public long pickSeed() {
+        return seed != null ? seed : System.nanoTime() ^ Xoshiro256.splitMix(Thread.currentThread().getId());
+    }
+
+    //true if ant tours are built on more than one thread
+    public boolean isParallel() {
+        return executor != null || threads > 1;
+    }
+
+}
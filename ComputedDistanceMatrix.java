@@ -0,0 +1,42 @@
+/*
+ * Keeps only the coordinates of the cities and computes each distance when it
+ * is asked for. Memory is O(n), so this is what large instances run on.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class ComputedDistanceMatrix extends DistanceMatrix {
+
+    private final double[] xs;
+    private final double[] ys;
+    private final EdgeWeightType weightType;
+
+    //shares the coordinate arrays of an instance
+    public ComputedDistanceMatrix(double[] xs, double[] ys, EdgeWeightType weightType) {
+        if (weightType == EdgeWeightType.EXPLICIT) {
+            throw new IllegalArgumentException("EXPLICIT distances cannot be computed from coordinates");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.weightType = weightType;
+    }
+
+    //returns the distance from source to destination
+    public double get(int source, int dest) {
+        return weightType.distance(xs[source], ys[source], xs[dest], ys[dest]);
+    }
+
+    //getter for number of cities
+    public int getNumCities() {
+        return xs.length;
+    }
+
+    //approximate heap used by the coordinates, in bytes
+    public long getFootprint() {
+        return 16L * xs.length;
+    }
+
+}
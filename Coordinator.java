@@ -0,0 +1,309 @@
+/*
+ * The hub of colonies running in separate processes (see Worker). Workers
+ * connect over TCP and report their best tour every few iterations; whenever
+ * one beats the best the coordinator has seen, the coordinator passes it on to
+ * every other worker. Each worker keeps its own pheromone, heap and garbage
+ * collector; only tours travel.
+ *
+ * The coordinator holds the instance too, and measures every tour it is sent
+ * itself, so a worker claiming a wrong length cannot hold back the others.
+ *
+ * A worker that dies or drops its connection is simply left out from then on:
+ * its last tour is kept, and the others carry on. When a worker reaches its
+ * target, the coordinator tells the rest to stop.
+ *
+ *   java aco.Coordinator <port> <workers> <file.tsp>
+ *
+ * waits for the given number of workers to finish (or be lost) and prints the
+ * best tour length.
+ */
+package aco;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class Coordinator implements AutoCloseable {
+
+    //one connected worker
+    private final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final String name;
+        private int numCities;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.name = socket.getRemoteSocketAddress().toString();
+        }
+
+        //sends a message, dropping the worker if it cannot be reached
+        synchronized void send(Message message) {
+            try {
+                message.write(out);
+            } catch (IOException e) {
+                lose(this, e);
+            }
+        }
+    }
+
+    //something to send to a worker
+    private interface Message {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final ServerSocket server;
+    private final DistanceMatrix distances;
+    private final Thread acceptor;
+    private final List<Connection> workers = new CopyOnWriteArrayList<Connection>();
+    private volatile boolean closed;
+
+    private final int numCities;
+
+    //guarded by this: the best tour so far and how the workers have ended
+    private int[] bestTour;
+    private double bestTourLength = Double.MAX_VALUE;
+    private int workersDone;
+    private int workersLost;
+    private boolean targetReached;
+
+    private Coordinator(ServerSocket server, Problem problem) {
+        this.server = server;
+        this.distances = problem.getDistances();
+        this.numCities = problem.getNumCities();
+        this.acceptor = new Thread(this::accept, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    //starts a coordinator for workers on problem on the loopback interface;
+    //port 0 picks a free one
+    public static Coordinator start(int port, Problem problem) throws IOException {
+        return start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), problem);
+    }
+
+    //starts a coordinator for workers on problem on the given address
+    public static Coordinator start(InetSocketAddress address, Problem problem) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.bind(address);
+        return new Coordinator(server, problem);
+    }
+
+    //the port workers connect to
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    //takes in workers until closed, each on a thread of its own
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Thread reader = new Thread(() -> serve(socket), "coordinator-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Coordinator stopped accepting workers: " + e);
+                }
+                return;
+            }
+        }
+    }
+
+    //reads one worker's messages until it is done or gone
+    private void serve(Socket socket) {
+        Connection worker;
+        try {
+            worker = new Connection(socket);
+            if (worker.in.readByte() != TourWire.HELLO) {
+                throw new IOException("Worker did not say hello");
+            }
+            worker.numCities = TourWire.readHello(worker.in);
+            join(worker);
+        } catch (IOException e) {
+            System.err.println("Refused worker " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+            closeQuietly(socket);
+            return;
+        }
+
+        try {
+            while (true) {
+                byte type = worker.in.readByte();
+                if (type == TourWire.TOUR) {
+                    offer(worker, TourWire.readTour(worker.in, worker.numCities));
+                } else if (type == TourWire.DONE) {
+                    finish(worker, TourWire.readDone(worker.in));
+                    return;
+                } else {
+                    throw new IOException("Unknown message " + type);
+                }
+            }
+        } catch (IOException e) {
+            lose(worker, e);
+        }
+    }
+
+    //adds a worker that said hello; every worker must be on the same instance
+    private void join(Connection worker) throws IOException {
+        int[] tour;
+        double length;
+        if (worker.numCities != numCities) {
+            throw new IOException("Worker has " + worker.numCities + " cities, expected " + numCities);
+        }
+        synchronized (this) {
+            if (targetReached) {
+                throw new IOException("The run is already over");
+            }
+            workers.add(worker);
+            tour = bestTour;
+            length = bestTourLength;
+        }
+        //a late worker starts from the best tour so far
+        if (tour != null) {
+            worker.send(out -> TourWire.writeTour(out, 0, length, tour));
+        }
+    }
+
+    //takes a worker's tour and passes it on if it is the best so far. The
+    //length is measured here, not taken from the worker.
+    private void offer(Connection from, TourWire.Tour tour) {
+        int[] cities = tour.getCities();
+        double length = 0;
+        for (int edge = 0; edge < numCities; edge++) {
+            length += distances.get(cities[edge], cities[edge + 1]);
+        }
+        synchronized (this) {
+            if (length >= bestTourLength) {
+                return;
+            }
+            bestTourLength = length;
+            bestTour = cities;
+        }
+        double measured = length;
+        for (Connection worker : workers) {
+            if (worker != from) {
+                worker.send(out -> TourWire.writeTour(out, tour.getIteration(), measured, cities));
+            }
+        }
+    }
+
+    //a worker finished; if it reached its target the others can stop too
+    private void finish(Connection worker, boolean reachedTarget) {
+        workers.remove(worker);
+        closeQuietly(worker.socket);
+        synchronized (this) {
+            workersDone++;
+            targetReached |= reachedTarget;
+            notifyAll();
+        }
+        if (reachedTarget) {
+            for (Connection other : workers) {
+                other.send(TourWire::writeStop);
+            }
+        }
+    }
+
+    //drops a worker that can no longer be reached; the run goes on without it
+    private void lose(Connection worker, IOException cause) {
+        if (!workers.remove(worker)) {
+            return;
+        }
+        closeQuietly(worker.socket);
+        if (!closed) {
+            System.err.println("Lost worker " + worker.name + ": " + cause);
+        }
+        synchronized (this) {
+            workersLost++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until workers workers have finished or been lost, or until
+     * timeoutMillis have passed (0 to wait for as long as it takes). Returns
+     * true if they all ended.
+     */
+    public synchronized boolean awaitWorkers(int workers, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (workersDone + workersLost < workers) {
+            long left = timeoutMillis == 0 ? 0 : deadline - System.currentTimeMillis();
+            if (timeoutMillis != 0 && left <= 0) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+
+    //stops taking workers and disconnects the ones still running
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(server);
+        for (Connection worker : workers) {
+            closeQuietly(worker.socket);
+        }
+        workers.clear();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //nothing more to do with it
+        }
+    }
+
+    //copy of the best tour any worker reported, or null if none has yet
+    public synchronized int[] getBestTour() {
+        return bestTour == null ? null : bestTour.clone();
+    }
+
+    //length of the best tour any worker reported
+    public synchronized double getBestTourLength() {
+        return bestTourLength;
+    }
+
+    //workers connected right now
+    public int getWorkersRunning() {
+        return workers.size();
+    }
+
+    //workers that finished their run
+    public synchronized int getWorkersDone() {
+        return workersDone;
+    }
+
+    //workers that went away before finishing
+    public synchronized int getWorkersLost() {
+        return workersLost;
+    }
+
+    //waits for the given number of workers and prints the best length
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("usage: java aco.Coordinator <port> <workers> <file.tsp>");
+            return;
+        }
+        //the coordinator only measures tours, so distances computed on the fly
+        //are enough
+        Problem problem = Problem.load(args[2], new ColonyOptions().setLowMemory(true));
+        try (Coordinator coordinator = start(Integer.parseInt(args[0]), problem)) {
+            System.out.println("Coordinator listening on port " + coordinator.getPort());
+            coordinator.awaitWorkers(Integer.parseInt(args[1]), 0);
+            System.out.println("Best tour length " + coordinator.getBestTourLength() + " from "
+                    + coordinator.getWorkersDone() + " workers, " + coordinator.getWorkersLost() + " lost");
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Flat, row-major storage of the distance between every pair of cities, so a
+ * whole row of distances sits next to each other in memory. Distances are
+ * stored as floats, which TspInstance only allows when that is exact.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class DenseDistanceMatrix extends DistanceMatrix {
+
+    private final int numCities;
+    private final float[] lengths;
+
+    //builds the full matrix from the city coordinates
+    public DenseDistanceMatrix(double[] xs, double[] ys, EdgeWeightType weightType) {
+        this(xs.length, computeLengths(xs, ys, weightType));
+    }
+
+    //wraps a matrix that was read from a file (not copied)
+    public DenseDistanceMatrix(int numCities, float[] lengths) {
+        if (numCities > MAX_DENSE_CITIES) {
+            throw new IllegalArgumentException("Too many cities for a dense distance matrix: " + numCities);
+        }
+        if (lengths.length != numCities * numCities) {
+            throw new IllegalArgumentException("Distance matrix has " + lengths.length
+                    + " entries, expected " + numCities + " squared");
+        }
+        this.numCities = numCities;
+        this.lengths = lengths;
+    }
+
+    //works out every distance (each pair once, since the problem is symmetric)
+    public static float[] computeLengths(double[] xs, double[] ys, EdgeWeightType weightType) {
+        int numCities = xs.length;
+        if (numCities > MAX_DENSE_CITIES) {
+            throw new IllegalArgumentException("Too many cities for a dense distance matrix: " + numCities);
+        }
+        float[] lengths = new float[numCities * numCities];
+
+        for (int source = 0; source < numCities; source++) {
+            int row = source * numCities;
+            for (int dest = source + 1; dest < numCities; dest++) {
+                float length = (float) weightType.distance(xs[source], ys[source], xs[dest], ys[dest]);
+                lengths[row + dest] = length;
+                lengths[dest * numCities + source] = length;
+            }
+        }
+        return lengths;
+    }
+
+    //returns the distance from source to destination
+    public double get(int source, int dest) {
+        return lengths[source * numCities + dest];
+    }
+
+    //getter for number of cities
+    public int getNumCities() {
+        return numCities;
+    }
+
+    //approximate heap used by the matrix, in bytes
+    public long getFootprint() {
+        return 4L * lengths.length;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * DensePheromoneMatrix with float cells: half the memory and half the bytes
+ * read per step. Every write goes through toCell, so no cell drops below the
+ * smallest normal float however long it evaporates.
+ */
+package aco;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class DenseFloatPheromoneMatrix extends PheromoneMatrix {
+
+    //lets wearAtomic compare-and-set single cells of the levels array
+    private static final VarHandle LEVEL = MethodHandles.arrayElementVarHandle(float[].class);
+
+    private final int numCities;
+    private final float[] levels;
+
+    //creates a matrix with the same pheromone level on every edge
+    public DenseFloatPheromoneMatrix(int numCities, double initialLevel) {
+        if (numCities > DistanceMatrix.MAX_DENSE_CITIES) {
+            throw new IllegalArgumentException("Too many cities for a dense pheromone matrix: " + numCities);
+        }
+        this.numCities = numCities;
+        levels = new float[numCities * numCities];
+        fill(initialLevel);
+    }
+
+    //stored level of the edge from source to dest
+    protected double getStored(int source, int dest) {
+        return levels[source * numCities + dest];
+    }
+
+    //adds to the stored level of the edge from source to dest only
+    protected void addStored(int source, int dest, double newPhero) {
+        int cell = source * numCities + dest;
+        levels[cell] = toCell(levels[cell] + newPhero);
+    }
+
+    //adds to the stored level of the edge in both directions
+    protected void depositStored(int cityA, int cityB, double newPhero) {
+        int ab = cityA * numCities + cityB;
+        int ba = cityB * numCities + cityA;
+        levels[ab] = toCell(levels[ab] + newPhero);
+        levels[ba] = toCell(levels[ba] + newPhero);
+    }
+
+    //wears the stored level of the edge (both directions) toward tO
+    protected void wearStored(int cityA, int cityB, double wearFactor, double tO) {
+        int ab = cityA * numCities + cityB;
+        int ba = cityB * numCities + cityA;
+        levels[ab] = toCell((1 - wearFactor) * levels[ab] + wearFactor * tO);
+        levels[ba] = toCell((1 - wearFactor) * levels[ba] + wearFactor * tO);
+    }
+
+    //same as wearStored, but safe to call while other threads are wearing or
+    //reading the same edge; each cell is updated with a compare-and-set loop
+    protected void wearStoredAtomic(int cityA, int cityB, double wearFactor, double tO) {
+        wearCell(cityA * numCities + cityB, wearFactor, tO);
+        wearCell(cityB * numCities + cityA, wearFactor, tO);
+    }
+
+    //lock-free local update of one cell
+    private void wearCell(int cell, double wearFactor, double tO) {
+        float oldLevel;
+        float newLevel;
+        do {
+            oldLevel = (float) LEVEL.getVolatile(levels, cell);
+            newLevel = toCell((1 - wearFactor) * oldLevel + wearFactor * tO);
+        } while (!LEVEL.compareAndSet(levels, cell, oldLevel, newLevel));
+    }
+
+    //multiplies every stored level by factor
+    protected void multiplyStored(double factor) {
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = toCell(levels[i] * factor);
+        }
+    }
+
+    //sets every stored level to level
+    protected void fillStored(double level) {
+        Arrays.fill(levels, toCell(level));
+    }
+
+    //the cells are floats
+    @Override
+    public boolean isSinglePrecision() {
+        return true;
+    }
+
+    //one cell per ordered pair of cities
+    public int getCellCount() {
+        return levels.length;
+    }
+
+    //writes count cells, starting at cell first, to out as it stands
+    protected void writeCells(ByteBuffer out, int first, int count) {
+        out.asFloatBuffer().put(levels, first, count);
+        out.position(out.position() + 4 * count);
+    }
+
+    //reads count cells, starting at cell first, from in
+    protected void readCells(ByteBuffer in, int first, int count) {
+        in.asFloatBuffer().get(levels, first, count);
+        in.position(in.position() + 4 * count);
+    }
+
+    //getter for number of cities
+    public int getNumCities() {
+        return numCities;
+    }
+
+    //approximate heap used by the matrix, in bytes
+    public long getFootprint() {
+        return 4L * levels.length;
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Distance between every pair of cities. DenseDistanceMatrix stores all of them
+ * in one flat row-major array; ComputedDistanceMatrix keeps only the city
+ * coordinates and works each distance out when it is asked for, which is the
+ * only option once n * n no longer fits in memory. TspInstance decides which
+ * one a colony gets.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public abstract class DistanceMatrix {
+
+    //largest instance whose n * n matrix still fits in a single Java array
+    public static final int MAX_DENSE_CITIES = 46340;
+
+    //Euclidean distance between two cities
+    public static double euclidean(City c1, City c2) {
+        double dx = c1.getX() - c2.getX();
+        double dy = c1.getY() - c2.getY();
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    //returns the distance from source to destination
+    public abstract double get(int source, int dest);
+
+    //getter for number of cities
+    public abstract int getNumCities();
+
+    //approximate heap used by the matrix, in bytes
+    public abstract long getFootprint();
+
+}
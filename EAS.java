@@ -6,12 +6,14 @@
 package aco;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  *
  * @author PryhuberA
  */
-public class EAS {
+public class EAS implements Solver {
 
     private final int numAnts;
     private final int numIter;
@@ -23,17 +25,75 @@ public class EAS {
     private static final double INIT_PHERO = 1.0;
     private final double optLen;
 
-    private Edge[] bestTour;
+    //cities of the best tour so far, copied in whenever an ant beats it
+    private final int[] bestTour;
     private double bestTourLength = Double.MAX_VALUE;
-    private int numCities;
+    private final int numCities;
     private AntEAS[] ants;
-    private City[] cities;
-    private static Edge[][] edgeMatrix;
+    private final Problem problem;
+    private final City[] cities;
+    private final DistanceMatrix distances;
+    private PheromoneMatrix pheromone;
+    private final CandidateLists candidates;
+    private ChoiceInfo choiceInfo;
+    private final ColonyOptions options;
+    private ExecutorService workers;
+    private boolean ownsWorkers;
+    private boolean workersStarted;
+    //one improver per ant (or one for the iteration's best), null if off
+    private LocalSearch[] localSearch;
+    private long seed;
+    private int iteration;
+    private int iterationsRun;
+    private long startTime;
+    private boolean clockStarted;
+    private boolean stopped;
+    //snapshot file, if any, and the solving time a resumed run had already spent
+    private Checkpoint checkpoint;
+    private long resumedNanos;
+    //hands iteration events to the listeners in the options, null if there are none
+    private IterationDispatcher dispatcher;
+    //Flight Recorder events of each phase and iteration
+    private final PhaseProfiler profiler = new PhaseProfiler("EAS");
+    //live numbers for JMX and the metrics server, null if neither is wanted
+    private ColonyMetrics metrics;
+    //when to stop, why the colony stopped (null while it runs), and the
+    //branching factor if the stagnation check needs it
+    private final Termination termination;
+    private Termination.Reason stopReason;
+    private BranchingFactor branching;
     
 
     EAS(int numAnts, int numIter, double alpha, double beta, double rho,
             double elitism, String file, double optLength, double percent) {
+        this(numAnts, numIter, alpha, beta, rho, elitism, file, optLength, percent,
+                new ColonyOptions());
+    }
+
+    //constructor for EAS with non-default colony options
+    EAS(int numAnts, int numIter, double alpha, double beta, double rho,
+            double elitism, String file, double optLength, double percent,
+            ColonyOptions options) {
+
+        //housekeeping to read in file being tested and create the edge matrix
+        this(Problem.load(file, options), numAnts, numIter, alpha, beta, rho, elitism, optLength, percent,
+                options);
 
+        solve();
+
+    }
+
+    //creates a colony on a problem that other colonies may share, without
+    //running it; call solve() or step()
+    public EAS(Problem problem, int numAnts, int numIter, double alpha, double beta, double rho,
+            double elitism, double optLength, double percent, ColonyOptions options) {
+
+        this.problem = problem;
+        this.numCities = problem.getNumCities();
+        this.cities = problem.getCities();
+        this.distances = problem.getDistances();
+        this.candidates = problem.getCandidates();
+        this.bestTour = new int[numCities + 1];
         this.numAnts = numAnts;
         this.numIter = numIter;
         //the degree of influence of the pheromone component
@@ -45,120 +105,184 @@ public class EAS {
         this.elitismFactor = elitism;
         this.percentOfOpt = percent;
         this.optLen = optLength;
+        this.options = options;
+        this.seed = options.pickSeed();
 
-        //housekeeping to read in file being tested and create the edge matrix
-        readFile(file);
-    
+        //this colony's own pheromone
         createEdges();
-        
-
-        //timer
-        long startTime = System.nanoTime();
-        //for as many iterations as specified in the constructor
-        for (int iter = 0; iter < numIter; iter++) {
-            //generate new ants every iteration
-            generateAnts();
+        createLocalSearch();
+        openCheckpoint();
+        if (!options.getIterationListeners().isEmpty()) {
+            dispatcher = new IterationDispatcher(options.getIterationListeners(), "EAS-listeners");
+        }
+        termination = new Termination(options, numIter, optLen, percentOfOpt);
+        if (Termination.needsBranchingFactor(options)) {
+            branching = new BranchingFactor(pheromone, candidates, options.getBranchingLambda());
+        }
+        if (ColonyMetrics.isWanted(options)) {
+            metrics = new ColonyMetrics("EAS", seed, optLen, options);
+        }
 
-            //walks ants to judge them for their tours (not their personality)
-            for (int i = 0; i < numAnts; i++) {
+    }
 
-                //updates best tour 
-                if (ants[i].getTourLength() < bestTourLength) {
-                    bestTourLength = ants[i].getTourLength();
-                    bestTour = ants[i].getTour();
-                }
+    //runs iterations until we hit numIter, the target length, or the time limit
+    @Override
+    public double solve() {
+        try {
+            while (step()) {
+                //keep going
             }
+        } finally {
+            close();
+        }
+        return bestTourLength;
+    }
 
-            //the odors are dead.
-            evapPheromone();
-
-            //long live the new odors!
-            //**applause**
-            layDownPhero();
+    //runs one iteration of the colony
+    @Override
+    public boolean step() {
+        if (stopped || iterationsRun >= numIter) {
+            if (stopReason == null) {
+                stopReason = Termination.Reason.ITERATIONS;
+            }
+            stopped = true;
+            return false;
+        }
 
-            //put down the extra potent ones
-            layElitePhero(elitismFactor);
+        //timer starts with the first iteration, counting the time a resumed
+        //run had already spent
+        if (!clockStarted) {
+            startTime = System.nanoTime() - resumedNanos;
+            clockStarted = true;
+            termination.start(iterationsRun);
+        }
+        long cpuMark = termination.cpuMark();
+        iteration = iterationsRun;
+        profiler.startIteration(iteration);
 
-            //if by some miracle we get the perfect solution (or any percentage of the optimal
-            //set in ACO) we will return early
-            if(bestTourLength/optLen <= percentOfOpt){
-                System.out.println("Found optimal solution early on the " + iter + "th iteration");
-                return;
-            }
-            long timeElapsed = System.nanoTime() - startTime;
-        //if the time elapsed is longer than five minutes, quit out
-        if(((double)timeElapsed/1000000000)> 300){
-            return;
+        //the first step picks the pool ants walk on, if any
+        if (!workersStarted) {
+            startWorkers();
         }
+        if (metrics != null) {
+            metrics.register();
         }
 
- 
+        //generate new ants every iteration (local search on every ant's tour
+        //happens as it is walked, so it counts as construction time)
+        long walkStart = System.nanoTime();
+        profiler.begin(PhaseProfiler.Phase.GENERATE_ANTS);
+        generateAnts();
+        profiler.end(PhaseProfiler.Phase.GENERATE_ANTS);
+        long walkNanos = System.nanoTime() - walkStart;
+
+        //with local search on the best tour only, polish it before judging
+        long searchStart = System.nanoTime();
+        improveIterationBest();
+        long searchNanos = System.nanoTime() - searchStart;
+
+        //walks ants to judge them for their tours (not their personality)
+        long updateStart = System.nanoTime();
+        double previousBest = bestTourLength;
+        double iterationBest = Double.MAX_VALUE;
+        for (int i = 0; i < numAnts; i++) {
+            iterationBest = Math.min(iterationBest, ants[i].getTourLength());
+
+            //updates best tour
+            if (ants[i].getTourLength() < bestTourLength) {
+                bestTourLength = ants[i].getTourLength();
+                System.arraycopy(ants[i].getCityTour(), 0, bestTour, 0, numCities + 1);
+            }
+        }
 
-    }
-    
+        //the odors are dead.
+        profiler.begin(PhaseProfiler.Phase.EVAP_PHEROMONE);
+        evapPheromone();
+        profiler.end(PhaseProfiler.Phase.EVAP_PHEROMONE);
+
+        //long live the new odors!
+        //**applause**
+        profiler.begin(PhaseProfiler.Phase.LAY_DOWN_PHERO);
+        layDownPhero();
+        profiler.end(PhaseProfiler.Phase.LAY_DOWN_PHERO);
+
+        //put down the extra potent ones
+        profiler.begin(PhaseProfiler.Phase.LAY_ELITE_PHERO);
+        layElitePhero(elitismFactor);
+        profiler.end(PhaseProfiler.Phase.LAY_ELITE_PHERO);
+
+        //refresh the cached edge weights once for the next colony
+        profiler.begin(PhaseProfiler.Phase.CHOICE_INFO);
+        choiceInfo.update();
+        profiler.end(PhaseProfiler.Phase.CHOICE_INFO);
+        long updateNanos = System.nanoTime() - updateStart;
+
+        iterationsRun++;
+
+        //stop at the iteration limit, near enough the optimum or the target,
+        //out of time, or once the colony has stagnated
+        long timeElapsed = System.nanoTime() - startTime;
+        termination.charge(cpuMark);
+        stopReason = termination.check(iterationsRun, bestTourLength, timeElapsed, branching);
+        if (stopReason == Termination.Reason.OPTIMUM) {
+            System.out.println("Found optimal solution early on the " + iteration + "th iteration");
+        }
+        if (stopReason != null) {
+            stopped = true;
+        }
 
+        saveCheckpoint();
 
-    /**
-     * Read in data about all cities from the file.
-     */
-    public void readFile(String fileName) {
-        int numCities = 0;
-        try {
-            BufferedReader file = new BufferedReader(new FileReader(fileName));
-            String buff;
-
-            do {
-                //read next line and tokenize it
-                buff = file.readLine();
-                String stringTemp = buff.trim();
-                String[] result = stringTemp.split("\\s+");
-                //for the third file String[] result = buff.split("    ");
-
-                //set the number of cities
-                if (result[0].equals("DIMENSION")) {
-//                    System.out.println("setting numCities");
-                    numCities = Integer.parseInt(result[2]);
-                }
+        long fallbacks = 0;
+        if (profiler.isCountingThroughput()) {
+            for (int i = 0; i < numAnts; i++) {
+                fallbacks += ants[i].getFallbacks();
+            }
+        }
+        profiler.throughput((long) numAnts * numCities, walkNanos, fallbacks);
+        profiler.endIteration(bestTourLength, iterationBest, previousBest, timeElapsed);
+        if (metrics != null) {
+            metrics.update(seed, iterationsRun, bestTourLength, iterationBest, timeElapsed,
+                    pheromone.getFootprint(), choiceInfo.getFootprint());
+        }
 
-            } while (!buff.equals("NODE_COORD_SECTION"));
+        if (dispatcher != null) {
+            //the tour is only copied when it changed
+            dispatcher.publish(new IterationEvent("EAS", seed, iterationsRun, bestTourLength, iterationBest,
+                    previousBest, timeElapsed, walkNanos, searchNanos, updateNanos, stopped,
+                    bestTourLength < previousBest ? bestTour.clone() : null));
+        }
 
+        return !stopped;
 
-            //set length of City array
-            this.numCities = numCities;
-            cities = new City[numCities];
+    }
+    
 
-            //put all info into in an array of "City" of length numCities
-            //City class will contain x and y coordinates of each city
-            //set coordinates of all cities
-            for (int i = 0; i < cities.length; i++) {
-                buff = file.readLine();
-                String stringTemp = buff.trim();
-                String[] tokens = stringTemp.split("\\s+");
-                cities[i] = new City(Integer.parseInt(tokens[0]), Double.parseDouble(tokens[1]),
-                        Double.parseDouble(tokens[2]));
-            }
 
-        } catch (Exception e) {
-            System.out.println("Error while reading file: " + e.getMessage());
+    //makes the improvers finished tours go through, if any
+    private void createLocalSearch() {
+        if (options.getLocalSearch() == LocalSearch.Kind.NONE) {
+            return;
+        }
+        localSearch = new LocalSearch[options.isLocalSearchAllAnts() ? numAnts : 1];
+        for (int i = 0; i < localSearch.length; i++) {
+            localSearch[i] = LocalSearch.create(options.getLocalSearch(), problem,
+                    options.getLocalSearchMillis() * 1000000);
         }
-
     }
 
     /**
-     * Initialize matrix of edges
+     * Initialize the pheromone storage
      */
     public void createEdges() {
-        edgeMatrix = new Edge[numCities][numCities];
-
-        //initialize edgeMatrix
-        for (int source = 0; source < numCities; source++) {
-            for (int dest = 0; dest < numCities; dest++) {
-                edgeMatrix[source][dest] = new Edge(cities[source], cities[dest]);
-
-                // arbitrarily set initial pheromone level on all edges to be the same
-                edgeMatrix[source][dest].addPheromone(INIT_PHERO);
-
-            }
+        // arbitrarily set initial pheromone level on all edges to be the same
+        pheromone = PheromoneMatrix.create(numCities, candidates, INIT_PHERO, problem.isLowMemory(),
+                options.isSinglePrecision());
+
+        choiceInfo = new ChoiceInfo(distances, pheromone, candidates, pheroWeight, heuristicWeight,
+                options.isSinglePrecision());
+        if (options.isAliasTables()) {
+            choiceInfo.enableAliasTables();
         }
     }
 
@@ -167,7 +291,15 @@ public class EAS {
      */
     public void generateAnts() {
 
-        ants = new AntEAS[numAnts];
+        //the ants are made once and then reused every iteration
+        if (ants == null) {
+            ants = new AntEAS[numAnts];
+        }
+
+        if (workers != null) {
+            generateAntsInParallel();
+            return;
+        }
 
         int startCity = 0;
 
@@ -179,7 +311,7 @@ public class EAS {
                 startCity = startCity % numCities;
             }
 
-            ants[index] = new AntEAS(startCity, numCities, pheroWeight, heuristicWeight);
+            walkAnt(index, startCity);
 
             startCity++;
 
@@ -187,30 +319,166 @@ public class EAS {
 
     }
 
-    //makes the pheromone on all the edges evaporate by a predetermined factor
-    public void evapPheromone() {
-        //walks through edge matrix
-        for (int source = 0; source < numCities; source++) {
-            for (int dest = 0; dest < numCities; dest++) {
-                edgeMatrix[source][dest].evapPheromone(evapFactor);
+    //same as generateAnts, but every ant builds its tour on a worker thread.
+    //The pheromone is only read while ants are walking, and invokeAll does not
+    //return until every ant is home, so the updates that follow never overlap
+    //with construction.
+    private void generateAntsInParallel() {
+        List<Callable<Void>> jobs = new ArrayList<Callable<Void>>(numAnts);
+        for (int index = 0; index < numAnts; index++) {
+            final int antIndex = index;
+            jobs.add(termination.charged(() -> {
+                walkAnt(antIndex, antIndex % numCities);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<Void> job : workers.invokeAll(jobs)) {
+                job.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while ants were building tours", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ant failed to build a tour", e.getCause());
+        }
+    }
+
+    //builds a tour for ant number index, creating the ant the first time
+    private void walkAnt(int index, int startCity) {
+        long antSeed = RandomSource.seedFor(seed, iteration, index);
+        if (ants[index] == null) {
+            ants[index] = new AntEAS(this, startCity, numCities, pheroWeight, heuristicWeight,
+                    RandomSource.create(options.getRandomKind(), antSeed));
+        } else {
+            ants[index].getRandom().setSeed(antSeed);
+            ants[index].walk(startCity);
+        }
+
+        //polish the tour on the same thread that built it
+        if (localSearch != null && options.isLocalSearchAllAnts()) {
+            ants[index].improveTour(localSearch[index]);
         }
     }
 
+    //runs the local search on this iteration's best tour, if only that one
+    //is to be improved
+    private void improveIterationBest() {
+        if (localSearch == null || options.isLocalSearchAllAnts()) {
+            return;
+        }
+        int best = 0;
+        for (int i = 1; i < numAnts; i++) {
+            if (ants[i].getTourLength() < ants[best].getTourLength()) {
+                best = i;
+            }
+        }
+        profiler.begin(PhaseProfiler.Phase.LOCAL_SEARCH);
+        ants[best].improveTour(localSearch[0]);
+        profiler.end(PhaseProfiler.Phase.LOCAL_SEARCH);
+    }
+
+    //picks the pool ants build their tours on, if any
+    private void startWorkers() {
+        if (options.getExecutor() != null) {
+            workers = options.getExecutor();
+            ownsWorkers = false;
+        } else if (options.getThreads() > 1) {
+            workers = new ForkJoinPool(options.getThreads());
+            ownsWorkers = true;
+        }
+        workersStarted = true;
+    }
+
+    //opens the snapshot file, if one is set, and with resume on carries on
+    //from the snapshot already in it
+    private void openCheckpoint() {
+        if (options.getCheckpointFile() == null) {
+            return;
+        }
+        try {
+            checkpoint = new Checkpoint(options.getCheckpointFile(), "EAS", numCities, pheromone,
+                    options.isResume());
+            if (options.isResume() && checkpoint.restore(pheromone, bestTour)) {
+                seed = checkpoint.getSeed();
+                iterationsRun = checkpoint.getIterationsRun();
+                bestTourLength = checkpoint.getBestTourLength();
+                resumedNanos = checkpoint.getElapsedNanos();
+                choiceInfo.update();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open checkpoint " + options.getCheckpointFile(), e);
+        }
+    }
+
+    //snapshots the colony every checkpoint interval and when it stops
+    private void saveCheckpoint() {
+        if (options.getCheckpointFile() == null
+                || (!stopped && iterationsRun % options.getCheckpointInterval() != 0)) {
+            return;
+        }
+        try {
+            if (checkpoint == null) {
+                //closed by close(); the file still holds this run
+                checkpoint = new Checkpoint(options.getCheckpointFile(), "EAS", numCities, pheromone, true);
+            }
+            checkpoint.save(seed, iterationsRun, bestTourLength, System.nanoTime() - startTime, bestTour,
+                    pheromone);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint " + options.getCheckpointFile(), e);
+        }
+    }
+
+    //shuts down the pool if this colony made it, waits for the last snapshot
+    //to reach the disk and for the listeners to drain, and withdraws the live
+    //metrics; a later step() starts over
+    @Override
+    public void close() {
+        if (ownsWorkers) {
+            workers.shutdown();
+        }
+        workers = null;
+        ownsWorkers = false;
+        workersStarted = false;
+        if (dispatcher != null) {
+            dispatcher.close();
+            //a later step() hands its events to a new thread, once the old
+            //one has delivered everything
+            dispatcher = new IterationDispatcher(options.getIterationListeners(), "EAS-listeners");
+        }
+        if (metrics != null) {
+            metrics.unregister();
+        }
+        if (checkpoint != null) {
+            try {
+                checkpoint.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close checkpoint " + options.getCheckpointFile(), e);
+            } finally {
+                checkpoint = null;
+            }
+        }
+    }
+
+    //makes the pheromone on all the edges evaporate by a predetermined factor
+    public void evapPheromone() {
+        pheromone.evaporate(evapFactor);
+    }
+
     /**
      * goes through by tour, then by edge for each specific tour, modifying
      * their pheromone levels
      */
     public void layDownPhero() {
         for (int ant = 0; ant < numAnts; ant++) {
-            Edge[] localTour = ants[ant].getTour();
+            int[] localTour = ants[ant].getCityTour();
+            double newPhero = 1 / ants[ant].getTourLength();
             for (int edge = 0; edge < numCities; edge++) {
-                int cityA = localTour[edge].getSource();
-                int cityB = localTour[edge].getDest();
-
-                edgeMatrix[cityA][cityB].addPheromone(1 / ants[ant].getTourLength());
-                edgeMatrix[cityB][cityA].addPheromone(1 / ants[ant].getTourLength());
-
+                pheromone.deposit(localTour[edge], localTour[edge + 1], newPhero);
+                if (branching != null) {
+                    branching.changed(localTour[edge], localTour[edge + 1]);
+                }
             }
 
         }
@@ -223,38 +491,120 @@ public class EAS {
      */
     public void layElitePhero(double eliteFact) {
         for (int edge = 0; edge < numCities; edge++) {
-            int cityA = bestTour[edge].getSource();
-            int cityB = bestTour[edge].getDest();
+            int cityA = bestTour[edge];
+            int cityB = bestTour[edge + 1];
 
-            edgeMatrix[cityA][cityB].addPheromone(eliteFact / bestTourLength);
-            edgeMatrix[cityB][cityA].addPheromone(eliteFact / bestTourLength);
+            pheromone.deposit(cityA, cityB, eliteFact / bestTourLength);
+            if (branching != null) {
+                branching.changed(cityA, cityB);
+            }
 
         }
     }
 
-    // //returns edge object that represents the source to the destination
-    public static Edge getEdge(int source, int dest) {
-        return edgeMatrix[source][dest];
+    //returns an edge view that represents the source to the destination
+    public Edge getEdge(int source, int dest) {
+        return new Edge(cities[source], cities[dest], distances, pheromone);
     }
 
     //returns the pheromone level along a path
-    public static double getPheroLevel(int i, int j) {
-        return edgeMatrix[i][j].getPheromone();
+    public double getPheroLevel(int i, int j) {
+        return pheromone.get(i, j);
     }
 
     //returns the distance from source to destination
-    public static double getEdgeLength(int i, int j) {
-        return edgeMatrix[i][j].getLength();
+    public double getEdgeLength(int i, int j) {
+        return distances.get(i, j);
+    }
+
+    //returns the nearest neighbour lists, or null if they are turned off
+    public CandidateLists getCandidates() {
+        return candidates;
+    }
+
+    //returns the cached edge weights
+    public ChoiceInfo getChoiceInfo() {
+        return choiceInfo;
     }
 
     //useful for debugging and for kicks
-    public void printTour(Edge[] tour) {
-        for (int i = 0; i < tour.length; i++) {
-            System.out.println("Edge from  " + tour[i].getSource() + " to " + tour[i].getDest());
+    public void printTour(int[] tour) {
+        for (int i = 0; i + 1 < tour.length; i++) {
+            System.out.println("Edge from  " + tour[i] + " to " + tour[i + 1]);
         }
     }
     
+    //master seed of this run, enough to repeat it exactly
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    //the shared data this colony runs on
+    @Override
+    public Problem getProblem() {
+        return problem;
+    }
+
+    //number of iterations the colony ran before stopping
+    @Override
+    public int getIterationsRun() {
+        return iterationsRun;
+    }
+
+    //takes in a tour found by another colony: a deposit is laid
+    //down like the elite one on the best tour
+    @Override
+    public boolean receiveTour(int[] tour, IslandModel.Update update) {
+        if (tour.length != numCities + 1 || tour[0] != tour[numCities]) {
+            throw new IllegalArgumentException("Not a closed tour of " + numCities + " cities");
+        }
+        double length = 0;
+        for (int edge = 0; edge < numCities; edge++) {
+            length += distances.get(tour[edge], tour[edge + 1]);
+        }
+        boolean better = length < bestTourLength;
+
+        if (update == IslandModel.Update.DEPOSIT || (update == IslandModel.Update.DEPOSIT_IF_BETTER && better)) {
+            for (int edge = 0; edge < numCities; edge++) {
+                int source = tour[edge];
+                int dest = tour[edge + 1];
+                pheromone.deposit(source, dest, elitismFactor / length);
+                if (branching != null) {
+                    branching.changed(source, dest);
+                }
+            }
+            choiceInfo.update();
+        }
+
+        if (better) {
+            bestTourLength = length;
+            System.arraycopy(tour, 0, bestTour, 0, numCities + 1);
+        }
+        return better;
+    }
+
+    //why the colony stopped, or null while it is still running
+    @Override
+    public Termination.Reason getStopReason() {
+        return stopReason;
+    }
+
+    //average lambda branching factor at the last iteration, NaN unless the
+    //options set a minimum for it
+    public double getBranchingFactor() {
+        return termination.getBranchingFactor();
+    }
+
+    //returns a copy of the best tour so far (every city once, with the first
+    //city repeated at the end), or null before the first iteration
+    @Override
+    public int[] getBestTour() {
+        return iterationsRun == 0 ? null : bestTour.clone();
+    }
+
     //pretty self explanatory (again)
+    @Override
     public double getBestTourLength(){
         return bestTourLength;
     }
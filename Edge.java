@@ -1,11 +1,10 @@
-/* Each Edge object holds two cities, as well as the length between them and 
- * the amount of pheromone on that path. Each each is also capable of maintaining
- * its own pheromone levels through evaporation, wearing away, and laying down.
+/* An Edge is a lightweight view of the path between two cities. The length and
+ * pheromone level themselves live in the flat DistanceMatrix and PheromoneMatrix
+ * arrays; an Edge only remembers which cell it points at, so creating one is
+ * optional and nothing in the colonies needs an n * n array of them.
 */
 package aco;
 
-import java.io.*;
-
 /**
  *
  * @author PryhuberA
@@ -15,41 +14,35 @@ public class Edge {
     private final City cityA;
     private final City cityB;
 
-    private double pheroLevel;
-    private double edgeLength;
+    private final DistanceMatrix distances;
+    private final PheromoneMatrix pheromone;
 
-    //construct an edge object
-    public Edge(City source, City dest) {
+    //construct a view of the edge from source to dest
+    public Edge(City source, City dest, DistanceMatrix distances, PheromoneMatrix pheromone) {
         cityA = source;
         cityB = dest;
-        pheroLevel = 0.0;
-
-        if (source == dest) {
-            edgeLength = 0;
-        } else {
-            setLength(source, dest);
-        }
-
+        this.distances = distances;
+        this.pheromone = pheromone;
     }
 
     //evaporate pheromone proportional to how much is already there
     public void evapPheromone(double evapFactor) {
-        pheroLevel = (1 - evapFactor) * pheroLevel;
+        pheromone.add(getSource(), getDest(), -evapFactor * getPheromone());
     }
 
     //wear the pheromone away proportional to how much is already there and tau
     public void wearPheromone(double wearFactor, double tO) {
-        pheroLevel = (1 - wearFactor) * pheroLevel + wearFactor * tO;
+        pheromone.add(getSource(), getDest(), wearFactor * (tO - getPheromone()));
     }
 
     //return pheromone
     public double getPheromone() {
-        return pheroLevel;
+        return pheromone.get(getSource(), getDest());
     }
 
     //add pheromone
     public void addPheromone(double newPhero) {
-        pheroLevel += newPhero;
+        pheromone.add(getSource(), getDest(), newPhero);
     }
 
     //return "source" city
@@ -64,14 +57,7 @@ public class Edge {
 
     //return distance between the cities
     public double getLength() {
-        return edgeLength;
-    }
-
-    //method to calculate Euclidean distance between cities
-    //using c1.getX, c1.getY and so on
-    public void setLength(City c1, City c2) {
-        edgeLength = Math.sqrt(Math.pow((c1.getX() - c2.getX()), 2)
-                + Math.pow((c1.getY() - c2.getY()), 2));
+        return distances.get(getSource(), getDest());
     }
 
 }
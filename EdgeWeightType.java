@@ -0,0 +1,81 @@
+/*
+ * The TSPLIB distance functions the colonies understand. All of them except
+ * EXPLICIT work the distance out from a pair of coordinates, following the
+ * definitions in the TSPLIB 95 documentation.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public enum EdgeWeightType {
+
+    //Euclidean distance rounded to the nearest integer
+    EUC_2D,
+    //Euclidean distance rounded up
+    CEIL_2D,
+    //pseudo-Euclidean distance used by att48 and att532
+    ATT,
+    //great circle distance, coordinates are DDD.MM latitude and longitude
+    GEO,
+    //distances are listed in the file instead of computed
+    EXPLICIT;
+
+    //radius of the earth and value of pi the TSPLIB GEO distance is defined with
+    private static final double GEO_RADIUS = 6378.388;
+    private static final double GEO_PI = 3.141592;
+
+    //parses the EDGE_WEIGHT_TYPE value of a TSPLIB header
+    public static EdgeWeightType parse(String value) {
+        try {
+            return valueOf(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported EDGE_WEIGHT_TYPE: " + value);
+        }
+    }
+
+    //true if nearby coordinates mean nearby cities, so a grid search over the
+    //coordinates finds the same nearest neighbours as the distance function
+    public boolean isPlanar() {
+        return this == EUC_2D || this == CEIL_2D || this == ATT;
+    }
+
+    //distance between (x1, y1) and (x2, y2)
+    public double distance(double x1, double y1, double x2, double y2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        switch (this) {
+            case EUC_2D:
+                return (int) (Math.sqrt(dx * dx + dy * dy) + 0.5);
+            case CEIL_2D:
+                return Math.ceil(Math.sqrt(dx * dx + dy * dy));
+            case ATT: {
+                double r = Math.sqrt((dx * dx + dy * dy) / 10.0);
+                double t = (int) (r + 0.5);
+                return t < r ? t + 1 : t;
+            }
+            case GEO: {
+                double lat1 = geoRadians(x1);
+                double lon1 = geoRadians(y1);
+                double lat2 = geoRadians(x2);
+                double lon2 = geoRadians(y2);
+                double q1 = Math.cos(lon1 - lon2);
+                double q2 = Math.cos(lat1 - lat2);
+                double q3 = Math.cos(lat1 + lat2);
+                return (int) (GEO_RADIUS * Math.acos(0.5 * ((1.0 + q1) * q2 - (1.0 - q1) * q3)) + 1.0);
+            }
+            default:
+                throw new IllegalStateException("EXPLICIT distances have to be looked up, not computed");
+        }
+    }
+
+    //converts a DDD.MM coordinate to radians. Degrees are truncated, as in
+    //the reference implementations the published optima were computed with
+    private static double geoRadians(double coordinate) {
+        int degrees = (int) coordinate;
+        double minutes = coordinate - degrees;
+        return GEO_PI * (degrees + 5.0 * minutes / 3.0) / 180.0;
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Raises numbers to a fixed exponent. The parameter sweep in ACO only uses
+ * whole and half-whole values of alpha and beta (0.5, 1, 1.5, 2, 3.5, 5...),
+ * which can be done with a few multiplies and at most one square root instead
+ * of a generic Math.pow call.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public final class FastPow {
+
+    //how far an exponent may be from a multiple of 0.5 and still get the fast
+    //path (the sweep builds its values as a * 0.1, so 1.5 is really 1.5000000000000002)
+    private static final double TOLERANCE = 1e-9;
+
+    private final double exponent;
+    private final int whole;
+    private final boolean half;
+    private final boolean generic;
+
+    //prepares the fastest way to raise numbers to exponent
+    public FastPow(double exponent) {
+        this.exponent = exponent;
+
+        double doubled = Math.rint(2 * exponent);
+        if (exponent >= 0 && exponent <= 64 && Math.abs(2 * exponent - doubled) < TOLERANCE) {
+            whole = (int) doubled / 2;
+            half = ((int) doubled & 1) == 1;
+            generic = false;
+        } else {
+            whole = 0;
+            half = false;
+            generic = true;
+        }
+    }
+
+    //returns x raised to the exponent
+    public double apply(double x) {
+        if (generic) {
+            return Math.pow(x, exponent);
+        }
+
+        double result;
+        switch (whole) {
+            case 0:
+                result = 1.0;
+                break;
+            case 1:
+                result = x;
+                break;
+            case 2:
+                result = x * x;
+                break;
+            case 3:
+                result = x * x * x;
+                break;
+            default:
+                result = 1.0;
+                double base = x;
+                for (int e = whole; e > 0; e >>= 1) {
+                    if ((e & 1) == 1) {
+                        result *= base;
+                    }
+                    base *= base;
+                }
+        }
+
+        return half ? result * Math.sqrt(x) : result;
+    }
+
+    //true if apply() never falls back to Math.pow
+    public boolean isFast() {
+        return !generic;
+    }
+
+    //getter for the exponent
+    public double getExponent() {
+        return exponent;
+    }
+
+}
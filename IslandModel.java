@@ -0,0 +1,219 @@
+/*
+ * Runs several colonies side by side as islands, each on a thread of its own,
+ * on one shared Problem (the distances and candidate lists are only read, so
+ * they are loaded once). Every interval iterations an island hands its best
+ * tour to its neighbours and takes in the best one handed to it since it last
+ * looked. Islands never wait for each other: each one has a mailbox holding
+ * the shortest tour delivered to it so far, written with compare-and-set by
+ * the senders and emptied by the island, so a slow island only means its
+ * neighbours hear from it less often.
+ *
+ * The colonies should differ in their seeds (or in their parameters), or they
+ * will all find the same tours. What a received tour does to the colony is
+ * the Update rule; see Solver.receiveTour. The model stops when every island
+ * has stopped, or as soon as one of them reaches the optimum or the target
+ * length.
+ */
+package aco;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class IslandModel {
+
+    //who an island sends its best tour to
+    public enum Topology {
+        //the next island, the last one sending to the first
+        RING,
+        //every other island
+        FULLY_CONNECTED
+    }
+
+    //what a received tour does to the colony that receives it
+    public enum Update {
+        //becomes the colony's best tour if it is shorter; the pheromone
+        //follows through the colony's own best tour update
+        ADOPT,
+        //if it is shorter, is also deposited on once, as the colony deposits
+        //on its own best tour
+        DEPOSIT_IF_BETTER,
+        //is always deposited on once, and adopted if it is shorter
+        DEPOSIT
+    }
+
+    //a tour on its way to an island
+    private static final class Migrant {
+        final int[] tour;
+        final double length;
+
+        Migrant(int[] tour, double length) {
+            this.tour = tour;
+            this.length = length;
+        }
+    }
+
+    private final List<Solver> islands;
+    private final int interval;
+    private final Topology topology;
+    private final Update update;
+
+    //one mailbox per island
+    private final AtomicReferenceArray<Migrant> mailboxes;
+    //set when one island reached the target, to stop the others
+    private volatile boolean finished;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong adopted = new AtomicLong();
+
+    private int[] bestTour;
+    private double bestTourLength = Double.MAX_VALUE;
+
+    /**
+     * Islands made of the given colonies, which must all run on the same
+     * Problem, exchanging tours every interval iterations.
+     */
+    public IslandModel(List<? extends Solver> islands, int interval, Topology topology, Update update) {
+        if (islands.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one island");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Migration interval must be at least 1: " + interval);
+        }
+        Problem problem = islands.get(0).getProblem();
+        for (Solver island : islands) {
+            if (island.getProblem() != problem) {
+                throw new IllegalArgumentException("Islands must share one Problem");
+            }
+        }
+        this.islands = new ArrayList<Solver>(islands);
+        this.interval = interval;
+        this.topology = topology;
+        this.update = update;
+        this.mailboxes = new AtomicReferenceArray<Migrant>(islands.size());
+    }
+
+    //runs every island until the model stops, closes them and returns the best
+    //tour length any of them found
+    public double solve() {
+        int count = islands.size();
+        ExecutorService pool = Executors.newFixedThreadPool(count);
+        try {
+            List<Future<?>> running = new ArrayList<Future<?>>(count);
+            for (int i = 0; i < count; i++) {
+                final int island = i;
+                running.add(pool.submit(() -> runIsland(island)));
+            }
+            for (Future<?> island : running) {
+                island.get();
+            }
+        } catch (InterruptedException e) {
+            finished = true;
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the islands were running", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Island failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        for (Solver island : islands) {
+            if (island.getBestTour() != null && island.getBestTourLength() < bestTourLength) {
+                bestTourLength = island.getBestTourLength();
+                bestTour = island.getBestTour();
+            }
+        }
+        return bestTourLength;
+    }
+
+    //steps one island until it or the model stops, exchanging tours on the way
+    private void runIsland(int index) {
+        Solver island = islands.get(index);
+        try {
+            while (!finished && island.step()) {
+                if (island.getIterationsRun() % interval == 0) {
+                    receive(index, island);
+                    send(index, island);
+                }
+            }
+            Termination.Reason reason = island.getStopReason();
+            if (reason == Termination.Reason.OPTIMUM || reason == Termination.Reason.TARGET_LENGTH) {
+                finished = true;
+            }
+        } catch (RuntimeException | Error e) {
+            //no point in the others running on without it
+            finished = true;
+            throw e;
+        } finally {
+            island.close();
+        }
+    }
+
+    //hands the island's best tour to its neighbours
+    private void send(int index, Solver island) {
+        Migrant migrant = new Migrant(island.getBestTour(), island.getBestTourLength());
+        int count = islands.size();
+        if (topology == Topology.RING) {
+            deliver((index + 1) % count, migrant, index);
+        } else {
+            for (int other = 0; other < count; other++) {
+                deliver(other, migrant, index);
+            }
+        }
+    }
+
+    //puts migrant in the mailbox of island to, unless a shorter tour is
+    //already waiting there
+    private void deliver(int to, Migrant migrant, int from) {
+        if (to == from) {
+            return;
+        }
+        while (true) {
+            Migrant waiting = mailboxes.get(to);
+            if (waiting != null && waiting.length <= migrant.length) {
+                return;
+            }
+            if (mailboxes.compareAndSet(to, waiting, migrant)) {
+                sent.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    //takes in the tour waiting for the island, if any
+    private void receive(int index, Solver island) {
+        Migrant migrant = mailboxes.getAndSet(index, null);
+        if (migrant != null && island.receiveTour(migrant.tour, update)) {
+            adopted.incrementAndGet();
+        }
+    }
+
+    //the colonies, in the order they were given
+    public List<Solver> getIslands() {
+        return Collections.unmodifiableList(islands);
+    }
+
+    //best tour length any island found, after solve()
+    public double getBestTourLength() {
+        return bestTourLength;
+    }
+
+    //copy of the best tour any island found, or null before solve()
+    public int[] getBestTour() {
+        return bestTour == null ? null : bestTour.clone();
+    }
+
+    //tours put in a mailbox (a shorter one waiting there is not replaced)
+    public long getToursSent() {
+        return sent.get();
+    }
+
+    //received tours that were shorter than the receiving island's best
+    public long getToursAdopted() {
+        return adopted.get();
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Hands a colony's iteration events to its listeners on a thread of its own.
+ * Publishing is a queue offer and, if the thread is asleep, a wake-up, so the
+ * colony never waits for a listener. The queue is bounded for plain events:
+ * while BACKLOG events are waiting, new ones are counted and dropped, except
+ * improvements and the last event, which always go through. A closed
+ * dispatcher stays closed; a colony that steps again uses a new one.
+ */
+package aco;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class IterationDispatcher {
+
+    //plain events allowed to wait before new ones are dropped
+    private static final int BACKLOG = 1024;
+
+    private final IterationListener[] listeners;
+    private final String name;
+    private final Queue<IterationEvent> queue = new ConcurrentLinkedQueue<IterationEvent>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    //set by publish, read by close, which may run on another thread
+    private volatile Thread thread;
+    private volatile boolean closed;
+    private long dropped;
+
+    //creates a dispatcher for the given listeners; name is used for its thread
+    public IterationDispatcher(List<IterationListener> listeners, String name) {
+        this.listeners = listeners.toArray(new IterationListener[0]);
+        this.name = name;
+    }
+
+    //queues event for the listeners and returns straight away
+    public void publish(IterationEvent event) {
+        if (closed) {
+            throw new IllegalStateException("Dispatcher " + name + " is closed");
+        }
+        if (waiting.get() >= BACKLOG && !event.isImprovement() && !event.isLast()) {
+            dropped++;
+            return;
+        }
+        if (thread != null && !thread.isAlive()) {
+            //the thread died outside the listeners (out of memory, say), so
+            //nothing drains the queue any more
+            if (dropped++ == 0) {
+                System.err.println("Iteration listener thread " + name + " died, dropping events");
+            }
+            return;
+        }
+        queue.offer(event);
+        waiting.incrementAndGet();
+
+        if (thread == null) {
+            thread = new Thread(this::deliver, name);
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    //lets the thread deliver what is queued and waits for it to stop. Events
+    //cannot be published after this.
+    public void close() {
+        closed = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //number of events dropped because the listeners were behind, or because
+    //the dispatch thread died
+    public long getDropped() {
+        return dropped;
+    }
+
+    //the dispatch thread: delivers events in order, sleeping while there are none
+    private void deliver() {
+        while (true) {
+            IterationEvent event = queue.poll();
+            if (event == null) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            waiting.decrementAndGet();
+            for (IterationListener listener : listeners) {
+                try {
+                    listener.iterationFinished(event);
+                } catch (Throwable e) {
+                    //one broken listener must not silence the others, even
+                    //with an Error such as a failed assertion
+                    System.err.println("Iteration listener failed: " + e);
+                }
+            }
+        }
+    }
+
+}
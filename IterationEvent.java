@@ -0,0 +1,112 @@
+/*
+ * What happened in one iteration of a colony: the best length so far and of
+ * this iteration, whether the best improved, how long the run has taken and
+ * how this iteration's time split between building tours, improving them and
+ * updating the pheromone. Events are immutable, so listeners may keep them.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public final class IterationEvent {
+
+    private final String algorithm;
+    private final long seed;
+    private final int iteration;
+    private final double bestLength;
+    private final double iterationBestLength;
+    private final double previousBestLength;
+    private final long elapsedNanos;
+    private final long constructionNanos;
+    private final long localSearchNanos;
+    private final long updateNanos;
+    private final boolean last;
+    private final int[] bestTour;
+
+    //creates an event; bestTour is only passed (as a copy) when it improved
+    public IterationEvent(String algorithm, long seed, int iteration, double bestLength, double iterationBestLength,
+            double previousBestLength, long elapsedNanos, long constructionNanos, long localSearchNanos,
+            long updateNanos, boolean last, int[] bestTour) {
+        this.algorithm = algorithm;
+        this.seed = seed;
+        this.iteration = iteration;
+        this.bestLength = bestLength;
+        this.iterationBestLength = iterationBestLength;
+        this.previousBestLength = previousBestLength;
+        this.elapsedNanos = elapsedNanos;
+        this.constructionNanos = constructionNanos;
+        this.localSearchNanos = localSearchNanos;
+        this.updateNanos = updateNanos;
+        this.last = last;
+        this.bestTour = bestTour;
+    }
+
+    //"ACS" or "EAS"
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    //master seed of the run, which tells runs with the same listener apart
+    public long getSeed() {
+        return seed;
+    }
+
+    //number of iterations finished, this one included
+    public int getIteration() {
+        return iteration;
+    }
+
+    //best tour length so far
+    public double getBestLength() {
+        return bestLength;
+    }
+
+    //shortest tour built in this iteration
+    public double getIterationBestLength() {
+        return iterationBestLength;
+    }
+
+    //best tour length before this iteration (Double.MAX_VALUE before the first)
+    public double getPreviousBestLength() {
+        return previousBestLength;
+    }
+
+    //true if this iteration found a shorter tour than any before it
+    public boolean isImprovement() {
+        return bestLength < previousBestLength;
+    }
+
+    //time the run has spent solving so far, in nanoseconds
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    //time this iteration spent building tours, in nanoseconds
+    public long getConstructionNanos() {
+        return constructionNanos;
+    }
+
+    //time this iteration spent in local search, in nanoseconds
+    public long getLocalSearchNanos() {
+        return localSearchNanos;
+    }
+
+    //time this iteration spent evaporating and laying down pheromone and
+    //refreshing the cached edge weights, in nanoseconds
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    //true if the colony stopped after this iteration
+    public boolean isLast() {
+        return last;
+    }
+
+    //the new best tour if this iteration improved it, otherwise null
+    public int[] getBestTour() {
+        return bestTour == null ? null : bestTour.clone();
+    }
+
+}
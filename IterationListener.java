@@ -0,0 +1,19 @@
+/*
+ * Callback for following a colony while it runs, for example to stream its
+ * convergence curve. Events are handed over on a thread of their own, so a
+ * slow listener never holds up the ants. If the listeners fall far behind,
+ * plain iterations are skipped until they catch up, but an improvement or the
+ * last event of a run is always delivered.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public interface IterationListener {
+
+    //called once for every finished iteration, in order, on the dispatch thread
+    void iterationFinished(IterationEvent event);
+
+}
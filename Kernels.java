@@ -0,0 +1,172 @@
+/*
+ * The data-parallel loops over flat double arrays: scaling a whole pheromone
+ * matrix, multiplying the pheromone half of the choice info by eta^beta,
+ * summing roulette weights and finding the greedy maximum. When the Vector
+ * API (jdk.incubator.vector) is available they run as SIMD code from
+ * VectorKernels, otherwise as the plain loops below.
+ *
+ * VectorKernels lives in vector/ so that the rest compiles with plain javac.
+ * To get the vector code, compile it after the rest and run with the module:
+ *
+ *   javac -d out *.java
+ *   javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+ *   java --add-modules jdk.incubator.vector -cp out aco.ACO ...
+ *
+ * Without the class, or without the module at run time, the scalar code runs.
+ * -Daco.scalar=true forces the scalar code.
+ *
+ * Both versions give bit-for-bit the same answers, so a seeded run does not
+ * depend on the machine: sums are kept in PARTIAL_SUMS interleaved partial
+ * sums that are added up in a fixed order, exactly as the vector code does it.
+ * Scaling and multiplying are left to the scalar loops in both, since the JIT
+ * already turns those into vector code by itself; it cannot do that for the
+ * sum (the order of the adds would change) or for the branchy maximum search.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public final class Kernels {
+
+    //number of partial sums a sum is split into (four 256 bit vectors)
+    static final int PARTIAL_SUMS = 16;
+
+    //the loops every kernel has, scalar or vector
+    interface Impl {
+
+        //a[i] *= factor for from <= i < to
+        void scale(double[] a, int from, int to, double factor);
+
+        //out[i] = a[i] * b[i] for from <= i < to
+        void multiply(double[] a, double[] b, double[] out, int from, int to);
+
+        //sum of a[from] up to a[to - 1]
+        double sum(double[] a, int from, int to);
+
+        //index of the first largest value of a[from] up to a[to - 1], or -1 if
+        //the range is empty; a must not hold NaNs
+        int argMax(double[] a, int from, int to);
+
+        //short name for the benchmarks
+        String getName();
+    }
+
+    private static final Impl SCALAR = new Scalar();
+    private static final Impl VECTOR = loadVector();
+    private static final Impl IMPL = VECTOR == null || Boolean.getBoolean("aco.scalar") ? SCALAR : VECTOR;
+
+    private Kernels() {
+    }
+
+    //the vector kernels, or null if the Vector API (or a wide enough vector
+    //unit) is not there
+    private static Impl loadVector() {
+        try {
+            return (Impl) Class.forName("aco.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    //a[i] *= factor for from <= i < to
+    public static void scale(double[] a, int from, int to, double factor) {
+        IMPL.scale(a, from, to, factor);
+    }
+
+    //out[i] = a[i] * b[i] for from <= i < to; out may be a or b
+    public static void multiply(double[] a, double[] b, double[] out, int from, int to) {
+        IMPL.multiply(a, b, out, from, to);
+    }
+
+    //sum of a[from] up to a[to - 1]
+    public static double sum(double[] a, int from, int to) {
+        return IMPL.sum(a, from, to);
+    }
+
+    //index of the first largest value of a[from] up to a[to - 1], or -1 if
+    //the range is empty; a must not hold NaNs
+    public static int argMax(double[] a, int from, int to) {
+        return IMPL.argMax(a, from, to);
+    }
+
+    //true if the kernels run as vector code
+    public static boolean isVectorized() {
+        return IMPL != SCALAR;
+    }
+
+    //the scalar kernels, for comparisons
+    static Impl scalar() {
+        return SCALAR;
+    }
+
+    //the vector kernels, or null if they are not available
+    static Impl vector() {
+        return VECTOR;
+    }
+
+    //plain loops, used when the Vector API is missing
+    static class Scalar implements Impl {
+
+        public void scale(double[] a, int from, int to, double factor) {
+            for (int i = from; i < to; i++) {
+                a[i] *= factor;
+            }
+        }
+
+        public void multiply(double[] a, double[] b, double[] out, int from, int to) {
+            for (int i = from; i < to; i++) {
+                out[i] = a[i] * b[i];
+            }
+        }
+
+        public double sum(double[] a, int from, int to) {
+            double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0, s4 = 0.0, s5 = 0.0, s6 = 0.0, s7 = 0.0;
+            double s8 = 0.0, s9 = 0.0, s10 = 0.0, s11 = 0.0, s12 = 0.0, s13 = 0.0, s14 = 0.0, s15 = 0.0;
+            int i = from;
+            for (int bound = to - PARTIAL_SUMS; i <= bound; i += PARTIAL_SUMS) {
+                s0 += a[i];
+                s1 += a[i + 1];
+                s2 += a[i + 2];
+                s3 += a[i + 3];
+                s4 += a[i + 4];
+                s5 += a[i + 5];
+                s6 += a[i + 6];
+                s7 += a[i + 7];
+                s8 += a[i + 8];
+                s9 += a[i + 9];
+                s10 += a[i + 10];
+                s11 += a[i + 11];
+                s12 += a[i + 12];
+                s13 += a[i + 13];
+                s14 += a[i + 14];
+                s15 += a[i + 15];
+            }
+            //strictly left to right, as VectorKernels does it
+            double total = s0 + s1 + s2 + s3 + s4 + s5 + s6 + s7
+                    + s8 + s9 + s10 + s11 + s12 + s13 + s14 + s15;
+            for (; i < to; i++) {
+                total += a[i];
+            }
+            return total;
+        }
+
+        public int argMax(double[] a, int from, int to) {
+            int best = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                if (a[i] > bestValue || best < 0) {
+                    bestValue = a[i];
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        public String getName() {
+            return "scalar";
+        }
+    }
+
+}
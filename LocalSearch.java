@@ -0,0 +1,39 @@
+/*
+ * Improves a finished ant tour before the pheromone update. A tour is the
+ * int[] an ant builds: every city once, with the first city repeated at the
+ * end. An improver may rotate the tour, but keeps it closed. Each improver
+ * keeps scratch arrays of its own, so every thread needs its own instance.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public interface LocalSearch {
+
+    //the improvers that can be picked in ColonyOptions
+    enum Kind {
+        NONE,
+        TWO_OPT,
+        //2-opt and Or-opt on a two-level list, for large instances
+        OR_OPT
+    }
+
+    //improves tour in place and returns its new length
+    double improve(int[] tour, double length);
+
+    //creates an improver of the given kind for problem, or null for NONE. Each
+    //call to improve() stops after budgetNanos (0 for no limit)
+    static LocalSearch create(Kind kind, Problem problem, long budgetNanos) {
+        switch (kind) {
+            case TWO_OPT:
+                return new TwoOpt(problem, budgetNanos);
+            case OR_OPT:
+                return new OrOpt(problem, budgetNanos);
+            default:
+                return null;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * A small HTTP endpoint that serves the metrics of every colony registered
+ * with it in the Prometheus text format, at /metrics. Several runs, ACS or EAS,
+ * can share one server: each is a set of series labelled with its run name and
+ * algorithm, and drops out when the run is closed. The server runs on the
+ * JDK's own HttpServer with one daemon thread, so it never keeps the JVM alive.
+ */
+package aco;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToDoubleFunction;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class MetricsServer implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer http;
+    private final ExecutorService thread;
+    private final Map<String, ColonyMetrics> runs = new ConcurrentSkipListMap<String, ColonyMetrics>();
+
+    private MetricsServer(HttpServer http) {
+        this.http = http;
+        this.thread = Executors.newSingleThreadExecutor(job -> {
+            Thread t = new Thread(job, "aco-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        http.setExecutor(thread);
+        http.createContext("/metrics", this::handle);
+    }
+
+    //starts a server on the loopback interface; port 0 picks a free one
+    public static MetricsServer start(int port) throws IOException {
+        return start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    //starts a server on the given address
+    public static MetricsServer start(InetSocketAddress address) throws IOException {
+        MetricsServer server = new MetricsServer(HttpServer.create(address, 0));
+        server.http.start();
+        return server;
+    }
+
+    //the port the server listens on
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    //adds a run to the output
+    public void register(ColonyMetrics metrics) {
+        runs.put(metrics.getRun(), metrics);
+    }
+
+    //takes a run out of the output
+    public void unregister(ColonyMetrics metrics) {
+        runs.remove(metrics.getRun(), metrics);
+    }
+
+    //stops serving
+    @Override
+    public void close() {
+        http.stop(0);
+        thread.shutdown();
+    }
+
+    //answers a scrape
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    //the metrics of every registered run in the Prometheus text format
+    public String render() {
+        StringBuilder out = new StringBuilder();
+        gauge(out, "aco_iteration", "Iterations finished", ColonyMetrics::getIteration);
+        gauge(out, "aco_best_length", "Best tour length so far", ColonyMetrics::getBestLength);
+        gauge(out, "aco_iteration_best_length", "Best tour length of the last iteration",
+                ColonyMetrics::getIterationBestLength);
+        gauge(out, "aco_ratio_to_opt", "Best tour length over the known optimum", ColonyMetrics::getRatioToOpt);
+        gauge(out, "aco_elapsed_seconds", "Time the run has been solving", ColonyMetrics::getElapsedSeconds);
+        gauge(out, "aco_iterations_per_second", "Iterations per second since the run started",
+                ColonyMetrics::getIterationsPerSecond);
+        gauge(out, "aco_pheromone_bytes", "Heap held by the pheromone matrix", ColonyMetrics::getPheromoneBytes);
+        gauge(out, "aco_choice_info_bytes", "Heap held by the cached choice info",
+                ColonyMetrics::getChoiceInfoBytes);
+        gauge(out, "aco_iterations_since_improvement", "Iterations since the best tour last improved",
+                ColonyMetrics::getIterationsSinceImprovement);
+        gauge(out, "aco_iteration_best_gap", "Last iteration's best over the best so far, minus one",
+                ColonyMetrics::getIterationBestGap);
+        return out.toString();
+    }
+
+    //one gauge with a series per run; runs that have not finished an iteration
+    //yet, or have no value (NaN), are left out
+    private void gauge(StringBuilder out, String name, String help, ToDoubleFunction<ColonyMetrics> value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        for (ColonyMetrics metrics : runs.values()) {
+            double v = value.applyAsDouble(metrics);
+            if (metrics.getIteration() == 0 || Double.isNaN(v)) {
+                continue;
+            }
+            out.append(name).append("{run=\"").append(metrics.getRun())
+                    .append("\",algorithm=\"").append(metrics.getAlgorithm()).append("\"} ");
+            if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+                out.append((long) v);
+            } else {
+                out.append(v);
+            }
+            out.append('\n');
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Local search for large instances: 2-opt moves plus Or-opt moves, which cut
+ * out a segment of one to three cities and insert it (either way round) between
+ * two other neighbouring cities, a restricted 3-opt move. The tour is kept in a
+ * TwoLevelList, so the reversals the moves are made of cost O(sqrt(n)) rather
+ * than O(n). Like TwoOpt it only tries moves that create an edge to a candidate
+ * neighbour, and keeps a queue of cities to look at in place of don't-look bits.
+ * A call can be given a time budget, after which it returns the tour as it is.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class OrOpt implements LocalSearch {
+
+    //gains smaller than this are rounding noise, not improvements
+    private static final double EPSILON = 1e-9;
+
+    //longest segment an Or-opt move carries
+    private static final int MAX_SEGMENT = 3;
+
+    //how many cities are looked at between checks of the clock
+    private static final int CLOCK_INTERVAL = 64;
+
+    private final int numCities;
+    private final DistanceMatrix distances;
+    private final CandidateLists candidates;
+    private final long budgetNanos;
+    private final TwoLevelList list;
+
+    //cities waiting to be looked at, as a ring buffer; a city that is not in
+    //the queue has its don't-look bit set
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head;
+    private int count;
+
+    //creates an improver for problem that stops after budgetNanos (0 for no limit)
+    public OrOpt(Problem problem, long budgetNanos) {
+        this.numCities = problem.getNumCities();
+        this.distances = problem.getDistances();
+        this.candidates = problem.getCandidates();
+        if (candidates == null) {
+            throw new IllegalArgumentException("Or-opt needs candidate lists");
+        }
+        this.budgetNanos = budgetNanos;
+        list = new TwoLevelList(numCities);
+        queue = new int[numCities];
+        queued = new boolean[numCities];
+    }
+
+    //improves tour in place and returns its new length
+    public double improve(int[] tour, double length) {
+        if (numCities < 8) {
+            return length;
+        }
+        long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+
+        list.build(tour);
+        head = 0;
+        count = 0;
+        for (int i = 0; i < numCities; i++) {
+            queued[tour[i]] = false;
+        }
+        for (int i = 0; i < numCities; i++) {
+            push(tour[i]);
+        }
+
+        int sinceClock = 0;
+        while (count > 0) {
+            if (++sinceClock == CLOCK_INTERVAL) {
+                sinceClock = 0;
+                if (System.nanoTime() > deadline) {
+                    break;
+                }
+            }
+
+            //a move puts city back in the queue, so it is looked at again
+            //until it runs out of moves
+            int city = pop();
+            double gain = twoOptMove(city);
+            if (gain == 0) {
+                gain = orOptMove(city);
+            }
+            length -= gain;
+        }
+
+        list.toArray(tour);
+        return length;
+    }
+
+    //tries the 2-opt moves that give a a candidate as its new successor or
+    //predecessor, applies the first one that gains and returns the gain
+    private double twoOptMove(int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int b = forward ? list.next(a) : list.prev(a);
+            double removed = distances.get(a, b);
+
+            for (int rank = 0; rank < candidates.size(); rank++) {
+                int c = candidates.get(a, rank);
+                double added = distances.get(a, c);
+                if (added >= removed) {
+                    break;
+                }
+                int d = forward ? list.next(c) : list.prev(c);
+                if (c == b || d == a) {
+                    continue;
+                }
+
+                double gain = removed - added + distances.get(c, d) - distances.get(b, d);
+                if (gain > EPSILON) {
+                    //a-b and c-d become a-c and b-d
+                    exchange(a, b, c, d);
+                    push(a);
+                    push(b);
+                    push(c);
+                    push(d);
+                    return gain;
+                }
+            }
+        }
+        return 0;
+    }
+
+    //tries moving a segment of up to MAX_SEGMENT cities that starts or ends at
+    //city next to one of the candidates of its ends; applies the first move
+    //that gains and returns the gain
+    private double orOptMove(int city) {
+        for (int length = 1; length <= MAX_SEGMENT; length++) {
+            for (int side = 0; side < 2; side++) {
+                //the segment runs forward from first to last
+                int first = city;
+                int last = city;
+                for (int i = 1; i < length; i++) {
+                    if (side == 0) {
+                        last = list.next(last);
+                    } else {
+                        first = list.prev(first);
+                    }
+                }
+                double gain = moveSegment(first, last, length);
+                if (gain > 0) {
+                    return gain;
+                }
+                if (length == 1) {
+                    break;
+                }
+            }
+        }
+        return 0;
+    }
+
+    //looks for a place to put the segment first..last and moves it there if
+    //that shortens the tour; returns the gain
+    private double moveSegment(int first, int last, int length) {
+        int before = list.prev(first);
+        int after = list.next(last);
+        if (before == after || numCities - length < 4) {
+            return 0;
+        }
+        double removeGain = distances.get(before, first) + distances.get(last, after)
+                - distances.get(before, after);
+        if (removeGain <= EPSILON) {
+            return 0;
+        }
+
+        for (int end = 0; end < 2; end++) {
+            int near = end == 0 ? first : last;
+            int far = end == 0 ? last : first;
+
+            for (int rank = 0; rank < candidates.size(); rank++) {
+                int c = candidates.get(near, rank);
+                double added = distances.get(near, c);
+                if (added >= removeGain) {
+                    break;
+                }
+                if (inSegment(c, first, length)) {
+                    continue;
+                }
+
+                //near goes next to c, far next to one of c's tour neighbours
+                for (int way = 0; way < 2; way++) {
+                    int d = way == 0 ? list.next(c) : list.prev(c);
+                    if (inSegment(d, first, length)) {
+                        continue;
+                    }
+                    double gain = removeGain - added - distances.get(far, d) + distances.get(c, d);
+                    if (gain > EPSILON) {
+                        int from = way == 0 ? c : d;
+                        int to = way == 0 ? d : c;
+                        if (from == after || to == before) {
+                            //covered by moving before or after on its own
+                            continue;
+                        }
+                        insert(first, last, before, after, from, to, near == (way == 0 ? first : last));
+                        push(first);
+                        push(last);
+                        push(before);
+                        push(after);
+                        push(c);
+                        push(d);
+                        return gain;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Moves first..last (with before and after around it) between from and
+     * to, where to follows from. With firstAtFrom the tour ends up as
+     * from first..last to, otherwise as from last..first to. Done as two or
+     * three 2-opt exchanges:
+     *   before-first, from-to  ->  before-from, first-to
+     *   before-from, after-last ->  before-after, from-last
+     *   (from-last, first-to   ->  from-first, last-to)
+     */
+    private void insert(int first, int last, int before, int after, int from, int to, boolean firstAtFrom) {
+        exchange(before, first, from, to);
+        exchange(before, from, after, last);
+        if (firstAtFrom) {
+            exchange(from, last, first, to);
+        }
+    }
+
+    //replaces the tour edges a-b and c-d with a-c and b-d. b and d must follow
+    //a and c in the same direction
+    private void exchange(int a, int b, int c, int d) {
+        if (list.next(a) == b) {
+            list.reverse(b, c);
+        } else {
+            list.reverse(a, d);
+        }
+    }
+
+    //true if city is one of the length cities going forward from first
+    private boolean inSegment(int city, int first, int length) {
+        int current = first;
+        for (int i = 0; i < length; i++) {
+            if (current == city) {
+                return true;
+            }
+            current = list.next(current);
+        }
+        return false;
+    }
+
+    //clears the don't-look bit of city
+    private void push(int city) {
+        if (!queued[city]) {
+            queued[city] = true;
+            int tail = head + count;
+            queue[tail >= numCities ? tail - numCities : tail] = city;
+            count++;
+        }
+    }
+
+    //takes the next city to look at and sets its don't-look bit
+    private int pop() {
+        int city = queue[head];
+        head = head + 1 == numCities ? 0 : head + 1;
+        count--;
+        queued[city] = false;
+        return city;
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Emits the Flight Recorder events of one colony (see ColonyEvents). Whether
+ * a recording wants them is looked up once at the start of each iteration;
+ * when none does, every call below returns straight away without reading the
+ * clock or making an event, so a colony pays next to nothing for it.
+ *
+ * A colony calls startIteration, then begin and end around each phase, and
+ * endIteration when the iteration is over. A phase that is done a little at a
+ * time between other work (ACS's local pheromone update between ant steps) is
+ * opened with begin, timed piece by piece with mark and add, and closed with
+ * end; its event then reports the sum of the pieces as its time.
+ */
+package aco;
+
+import jdk.jfr.EventType;
+
+/**
+ *
+ * @author PryhuberA
+ */
+final class PhaseProfiler {
+
+    //the phases of an iteration, by the names of the methods that do them
+    enum Phase {
+        GENERATE_ANTS("generateAnts"),
+        WALK_ANTS("walkAnts"),
+        REMOVE_PHERO_ON_THE_GO("removePheroOnTheGo"),
+        LOCAL_SEARCH("localSearch"),
+        EVAP_PHEROMONE("evapPheromone"),
+        LAY_DOWN_PHERO("layDownPhero"),
+        LAY_ELITE_PHERO("layElitePhero"),
+        CHOICE_INFO("choiceInfo.update");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final EventType PHASE = EventType.getEventType(ColonyEvents.Phase.class);
+    private static final EventType ITERATION = EventType.getEventType(ColonyEvents.Iteration.class);
+    private static final EventType IMPROVEMENT = EventType.getEventType(ColonyEvents.Improvement.class);
+    private static final EventType THROUGHPUT = EventType.getEventType(ColonyEvents.Throughput.class);
+
+    private final String algorithm;
+
+    //what the recordings want this iteration
+    private int iteration;
+    private boolean phases;
+    private boolean throughput;
+
+    //the iteration's event and the open phase events, with when each phase
+    //started, the time added to it so far and in how many pieces
+    private ColonyEvents.Iteration iterationEvent;
+    private final ColonyEvents.Phase[] open = new ColonyEvents.Phase[Phase.values().length];
+    private final long[] started = new long[open.length];
+    private final long[] spent = new long[open.length];
+    private final int[] calls = new int[open.length];
+
+    PhaseProfiler(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    //starts iteration number iteration (counting from 0)
+    void startIteration(int iteration) {
+        this.iteration = iteration;
+        phases = PHASE.isEnabled();
+        throughput = THROUGHPUT.isEnabled();
+        iterationEvent = null;
+        if (ITERATION.isEnabled()) {
+            iterationEvent = new ColonyEvents.Iteration();
+            iterationEvent.begin();
+        }
+    }
+
+    //opens a phase
+    void begin(Phase phase) {
+        if (!phases) {
+            return;
+        }
+        int i = phase.ordinal();
+        open[i] = new ColonyEvents.Phase();
+        open[i].begin();
+        started[i] = System.nanoTime();
+        spent[i] = 0;
+        calls[i] = 0;
+    }
+
+    //the clock before one piece of a phase, or 0 if phases are not recorded
+    long mark() {
+        return phases ? System.nanoTime() : 0L;
+    }
+
+    //adds the time since mark to an open phase
+    void add(Phase phase, long mark) {
+        if (!phases) {
+            return;
+        }
+        spent[phase.ordinal()] += System.nanoTime() - mark;
+        calls[phase.ordinal()]++;
+    }
+
+    //closes a phase and records it
+    void end(Phase phase) {
+        int i = phase.ordinal();
+        ColonyEvents.Phase event = open[i];
+        if (event == null) {
+            return;
+        }
+        open[i] = null;
+        event.end();
+        if (event.shouldCommit()) {
+            event.algorithm = algorithm;
+            event.iteration = iteration;
+            event.phase = phase.label;
+            event.time = calls[i] == 0 ? System.nanoTime() - started[i] : spent[i];
+            event.calls = Math.max(1, calls[i]);
+            event.commit();
+        }
+    }
+
+    //true if the construction counters are recorded this iteration; the
+    //colony only adds up its ants' fallbacks if so
+    boolean isCountingThroughput() {
+        return throughput;
+    }
+
+    //records the construction counters of this iteration
+    void throughput(long antSteps, long constructionNanos, long fallbacks) {
+        if (!throughput) {
+            return;
+        }
+        ColonyEvents.Throughput event = new ColonyEvents.Throughput();
+        if (event.shouldCommit()) {
+            event.algorithm = algorithm;
+            event.iteration = iteration;
+            event.antSteps = antSteps;
+            event.stepsPerSecond = constructionNanos == 0 ? 0.0 : antSteps * 1e9 / constructionNanos;
+            event.fallbacks = fallbacks;
+            event.fallbackRate = antSteps == 0 ? 0.0 : (double) fallbacks / antSteps;
+            event.commit();
+        }
+    }
+
+    //ends the iteration; elapsedNanos is the time the run has taken so far
+    void endIteration(double bestLength, double iterationBestLength, double previousBestLength,
+            long elapsedNanos) {
+        boolean improved = bestLength < previousBestLength;
+        if (iterationEvent != null) {
+            iterationEvent.end();
+            if (iterationEvent.shouldCommit()) {
+                iterationEvent.algorithm = algorithm;
+                iterationEvent.iteration = iteration;
+                iterationEvent.bestLength = bestLength;
+                iterationEvent.iterationBestLength = iterationBestLength;
+                iterationEvent.improved = improved;
+                iterationEvent.commit();
+            }
+            iterationEvent = null;
+        }
+        if (improved && IMPROVEMENT.isEnabled()) {
+            ColonyEvents.Improvement event = new ColonyEvents.Improvement();
+            if (event.shouldCommit()) {
+                event.algorithm = algorithm;
+                event.iteration = iteration;
+                //the first tour has nothing before it, not a tour of length MAX_VALUE
+                event.previousLength = previousBestLength == Double.MAX_VALUE ? Double.NaN : previousBestLength;
+                event.bestLength = bestLength;
+                event.elapsed = elapsedNanos;
+                event.commit();
+            }
+        }
+    }
+
+}
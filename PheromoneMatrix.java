@@ -0,0 +1,193 @@
+/*
+ * Pheromone level on every edge. DensePheromoneMatrix keeps one cell per
+ * ordered pair of cities; SparsePheromoneMatrix keeps cells for candidate
+ * edges only and gives every other edge the same default level. The problem is
+ * symmetric, so the deposit and wear methods always update both directions.
+ *
+ * Evaporation is lazy. Every edge loses the same fraction of its pheromone, so
+ * instead of touching all n * n cells the matrix keeps one shared scale and
+ * stores each level divided by it: the real level is the stored one times the
+ * scale, evaporating only shrinks the scale, and deposits are divided by the
+ * scale on the way in. When the scale gets small enough that the stored levels
+ * could overflow, it is folded back into the cells in one pass, which happens
+ * once every few hundred iterations instead of every iteration.
+ *
+ * The float versions of both layouts halve the memory the cells take (and the
+ * bandwidth reading them). Their cells are clamped to the normal float range
+ * whenever they are written, so a long evaporation never leaves subnormal
+ * (slow) or zero levels behind, and the scale is folded in sooner so the
+ * stored levels stay far from the top of the range.
+ */
+package aco;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public abstract class PheromoneMatrix {
+
+    //below this the scale is folded back into the cells
+    private static final double MIN_SCALE = 1e-30;
+
+    //the same for float cells, whose range ends at about 3.4e38
+    private static final double MIN_FLOAT_SCALE = 1e-20;
+
+    //real level = stored level * scale, the same for every edge
+    private double scale = 1.0;
+
+    //number of times the scale has been folded into the cells
+    private int rescales;
+
+    //dense storage normally; candidate edges only when asked to or when the
+    //instance is too big for an n * n array
+    public static PheromoneMatrix create(int numCities, CandidateLists candidates, double initialLevel,
+            boolean sparse) {
+        return create(numCities, candidates, initialLevel, sparse, false);
+    }
+
+    //same as above, with float cells if singlePrecision is set
+    public static PheromoneMatrix create(int numCities, CandidateLists candidates, double initialLevel,
+            boolean sparse, boolean singlePrecision) {
+        if (sparse || numCities > DistanceMatrix.MAX_DENSE_CITIES) {
+            if (candidates == null) {
+                throw new IllegalArgumentException("Sparse pheromone storage needs candidate lists");
+            }
+            return singlePrecision ? new SparseFloatPheromoneMatrix(candidates, initialLevel)
+                    : new SparsePheromoneMatrix(candidates, initialLevel);
+        }
+        return singlePrecision ? new DenseFloatPheromoneMatrix(numCities, initialLevel)
+                : new DensePheromoneMatrix(numCities, initialLevel);
+    }
+
+    //returns the pheromone on the edge from source to dest
+    public double get(int source, int dest) {
+        return getStored(source, dest) * scale;
+    }
+
+    //returns the pheromone on the edge from source to dest up to a factor that
+    //is the same for every edge. Choosing between edges only needs their ratios,
+    //so ants can use this and skip the multiplication.
+    public double getRelative(int source, int dest) {
+        return getStored(source, dest);
+    }
+
+    //returns the relative pheromone on the edge from city to its rank-th
+    //candidate dest; storage laid out by candidate can answer this without a search
+    public double getRelativeCandidate(int city, int rank, int dest) {
+        return getStoredCandidate(city, rank, dest);
+    }
+
+    //adds pheromone to the edge from source to dest only
+    public void add(int source, int dest, double newPhero) {
+        addStored(source, dest, newPhero / scale);
+    }
+
+    //adds pheromone to the edge in both directions
+    public void deposit(int cityA, int cityB, double newPhero) {
+        depositStored(cityA, cityB, newPhero / scale);
+    }
+
+    //ACS local update: wears the pheromone on the edge (both directions) toward tO
+    public void wear(int cityA, int cityB, double wearFactor, double tO) {
+        wearStored(cityA, cityB, wearFactor, tO / scale);
+    }
+
+    //same as wear, but safe to call while other threads are wearing or reading
+    //the same edge
+    public void wearAtomic(int cityA, int cityB, double wearFactor, double tO) {
+        wearStoredAtomic(cityA, cityB, wearFactor, tO / scale);
+    }
+
+    //evaporates pheromone on every edge proportional to how much is already
+    //there. Only the shared scale changes, unless it has to be folded back in.
+    public void evaporate(double evapFactor) {
+        scale *= 1 - evapFactor;
+        if (scale < (isSinglePrecision() ? MIN_FLOAT_SCALE : MIN_SCALE)) {
+            multiplyStored(scale);
+            scale = 1.0;
+            rescales++;
+        }
+    }
+
+    //sets every edge to the same level
+    public void fill(double level) {
+        scale = 1.0;
+        fillStored(level);
+    }
+
+    //factor between the relative levels and the real ones
+    public double getScale() {
+        return scale;
+    }
+
+    //number of times the relative levels have all been multiplied by the
+    //scale; anything caching them has to be rebuilt when this changes
+    public int getRescales() {
+        return rescales;
+    }
+
+    //true if the cells are floats
+    public boolean isSinglePrecision() {
+        return false;
+    }
+
+    //bytes one cell takes in a snapshot
+    public int getCellBytes() {
+        return isSinglePrecision() ? 4 : 8;
+    }
+
+    //puts the scale back as it was when a snapshot of the cells was taken
+    void restoreScale(double scale, int rescales) {
+        this.scale = scale;
+        this.rescales = rescales;
+    }
+
+    //level as a float cell, kept inside the normal float range
+    protected static float toCell(double level) {
+        return (float) Math.min(Math.max(level, Float.MIN_NORMAL), Float.MAX_VALUE);
+    }
+
+    //stored level of the edge from source to dest
+    protected abstract double getStored(int source, int dest);
+
+    //stored level of the edge from city to its rank-th candidate dest
+    protected double getStoredCandidate(int city, int rank, int dest) {
+        return getStored(city, dest);
+    }
+
+    //adds to the stored level of the edge from source to dest only
+    protected abstract void addStored(int source, int dest, double amount);
+
+    //adds to the stored level of the edge in both directions
+    protected abstract void depositStored(int cityA, int cityB, double amount);
+
+    //wears the stored level of the edge (both directions) toward target
+    protected abstract void wearStored(int cityA, int cityB, double wearFactor, double target);
+
+    //same as wearStored, but safe while other threads use the same edge
+    protected abstract void wearStoredAtomic(int cityA, int cityB, double wearFactor, double target);
+
+    //multiplies every stored level by factor
+    protected abstract void multiplyStored(double factor);
+
+    //sets every stored level to level
+    protected abstract void fillStored(double level);
+
+    //number of cells a snapshot of the matrix holds
+    public abstract int getCellCount();
+
+    //writes count cells, starting at cell first, to out as it stands
+    protected abstract void writeCells(ByteBuffer out, int first, int count);
+
+    //reads count cells, starting at cell first, from in
+    protected abstract void readCells(ByteBuffer in, int first, int count);
+
+    //getter for number of cities
+    public abstract int getNumCities();
+
+    //approximate heap used by the matrix, in bytes
+    public abstract long getFootprint();
+
+}
@@ -0,0 +1,100 @@
+/*
+ * The read-only half of a solve: the cities, the distances between them and
+ * the nearest neighbour lists. None of it changes while a colony runs, so any
+ * number of ACS and EAS colonies, on any threads, can share one Problem and
+ * only keep their own pheromone.
+ */
+package aco;
+
+import java.io.*;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public final class Problem {
+
+    private final TspInstance instance;
+    private final City[] cities;
+    private final DistanceMatrix distances;
+    private final CandidateLists candidates;
+    private final boolean lowMemory;
+
+    //builds the shared data for instance; the candidate list size and low
+    //memory switch are taken from options
+    public Problem(TspInstance instance, ColonyOptions options) {
+        this.instance = instance;
+        this.lowMemory = options.isLowMemory() || instance.getNumCities() > DistanceMatrix.MAX_DENSE_CITIES;
+
+        //City class will contain x and y coordinates of each city
+        cities = instance.getCities();
+        distances = instance.createDistances(lowMemory);
+        candidates = createCandidates(options.getCandidateListSize());
+    }
+
+    /**
+     * Read in data about all cities from the file.
+     */
+    public static Problem load(String fileName, ColonyOptions options) {
+        try {
+            //low memory mode measures distances on the fly, so it does not
+            //need the cached matrix
+            return new Problem(TspLoader.load(fileName, options.getInstanceCacheDir(), !options.isLowMemory()),
+                    options);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error while reading file: " + fileName, e);
+        }
+    }
+
+    //builds the nearest neighbour lists; without a distance matrix to scan they
+    //come from a grid search over the coordinates
+    private CandidateLists createCandidates(int listSize) {
+        if (listSize == 0) {
+            if (lowMemory) {
+                throw new IllegalArgumentException("Low memory mode needs candidate lists");
+            }
+            return null;
+        }
+        //the grid search needs coordinates that distances are measured in
+        if (lowMemory && instance.hasPlanarCoordinates()) {
+            return new CandidateLists(cities, listSize);
+        }
+        return new CandidateLists(distances, listSize);
+    }
+
+    //getter for the file contents
+    public TspInstance getInstance() {
+        return instance;
+    }
+
+    //getter for number of cities
+    public int getNumCities() {
+        return cities.length;
+    }
+
+    //getter for the cities (shared, do not modify)
+    public City[] getCities() {
+        return cities;
+    }
+
+    //getter for the distances
+    public DistanceMatrix getDistances() {
+        return distances;
+    }
+
+    //returns the nearest neighbour lists, or null if they are turned off
+    public CandidateLists getCandidates() {
+        return candidates;
+    }
+
+    //true if colonies on this problem should keep only candidate-edge pheromone
+    public boolean isLowMemory() {
+        return lowMemory;
+    }
+
+    //bytes held by the distances and candidate lists
+    public long getFootprint() {
+        return distances.getFootprint() + (candidates == null ? 0 : candidates.getFootprint());
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * The random numbers an ant needs, behind a small interface so the generator
+ * can be swapped. Every ant owns its own source, and the colony reseeds it at
+ * the start of each iteration from the run's master seed, the iteration number
+ * and the ant's index. Each ant's draws therefore do not depend on which thread
+ * walked it, and a run can be repeated exactly from its seed.
+ */
+package aco;
+
+import java.util.SplittableRandom;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public interface RandomSource {
+
+    //the generators that can be picked in ColonyOptions
+    enum Kind {
+        XOSHIRO,
+        SPLITTABLE
+    }
+
+    //returns a double in [0, 1)
+    double nextDouble();
+
+    //returns an int in [0, bound)
+    int nextInt(int bound);
+
+    //restarts the sequence from seed
+    void setSeed(long seed);
+
+    //creates a generator of the given kind started from seed
+    static RandomSource create(Kind kind, long seed) {
+        switch (kind) {
+            case SPLITTABLE:
+                return new Splittable(seed);
+            default:
+                return new Xoshiro256(seed);
+        }
+    }
+
+    //derives the seed of one stream (for example an iteration) and substream
+    //(for example an ant) from the master seed of a run
+    static long seedFor(long masterSeed, long stream, long substream) {
+        long z = Xoshiro256.splitMix(masterSeed + Xoshiro256.GOLDEN_GAMMA * (stream + 1));
+        return Xoshiro256.splitMix(z + Xoshiro256.GOLDEN_GAMMA * (substream + 1));
+    }
+
+    //java.util.SplittableRandom behind the RandomSource interface
+    final class Splittable implements RandomSource {
+
+        private SplittableRandom random;
+
+        public Splittable(long seed) {
+            setSeed(seed);
+        }
+
+        public double nextDouble() {
+            return random.nextDouble();
+        }
+
+        public int nextInt(int bound) {
+            return random.nextInt(bound);
+        }
+
+        public void setSeed(long seed) {
+            random = new SplittableRandom(seed);
+        }
+    }
+
+}
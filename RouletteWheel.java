@@ -0,0 +1,126 @@
+/*
+ * Roulette wheel selection in a single pass. Weights are added one at a time
+ * into a running (cumulative) total, then one random number is scaled by the
+ * total and a binary search finds the slot it lands in. Nothing is divided
+ * per element and every weight is only worked out once. The buffers are sized
+ * once per ant and reused for every step.
+ *
+ * Long wheels (every unvisited city, once the candidates are used up) can
+ * instead be filled as a plain array of weights and drawn from with
+ * spinWeights, which finds the slot with the Kernels sums a block at a time.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class RouletteWheel {
+
+    //weights spinWeights sums in one go before it looks inside a block
+    private static final int BLOCK = 64;
+
+    private final int[] cities;
+    private final double[] cumulative;
+    private final double[] weights;
+    private int size;
+    private double total;
+
+    //creates a wheel with room for capacity slots
+    public RouletteWheel(int capacity) {
+        cities = new int[capacity];
+        cumulative = new double[capacity];
+        weights = new double[capacity];
+    }
+
+    //removes every slot
+    public void clear() {
+        size = 0;
+        total = 0.0;
+    }
+
+    //adds a slot for city with the given weight
+    public void add(int city, double weight) {
+        total += weight;
+        cities[size] = city;
+        cumulative[size] = total;
+        size++;
+    }
+
+    //picks a city with probability proportional to its weight, or -1 if the
+    //wheel is empty. If every weight has underflowed to zero the pick is
+    //uniform, and if rounding puts the draw past the last running total the
+    //last slot wins, so a non-empty wheel always returns a city.
+    public int spin(RandomSource random) {
+        if (size == 0) {
+            return -1;
+        }
+        if (!(total > 0.0)) {
+            return cities[random.nextInt(size)];
+        }
+
+        double target = random.nextDouble() * total;
+
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] > target) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return cities[low];
+    }
+
+    //room for the weights spinWeights draws from, filled in by the caller
+    public double[] getWeights() {
+        return weights;
+    }
+
+    //picks an index below count with probability proportional to
+    //getWeights()[index], or -1 if count is 0. Zero and rounding are handled
+    //the same way as in spin.
+    public int spinWeights(int count, RandomSource random) {
+        if (count == 0) {
+            return -1;
+        }
+        double weightTotal = Kernels.sum(weights, 0, count);
+        if (!(weightTotal > 0.0)) {
+            return random.nextInt(count);
+        }
+
+        double target = random.nextDouble() * weightTotal;
+
+        //skip whole blocks whose weights do not reach the target
+        double running = 0.0;
+        int start = 0;
+        for (; start + BLOCK < count; start += BLOCK) {
+            double block = Kernels.sum(weights, start, start + BLOCK);
+            if (running + block > target) {
+                break;
+            }
+            running += block;
+        }
+
+        for (int i = start; i < count - 1; i++) {
+            running += weights[i];
+            if (running > target) {
+                return i;
+            }
+        }
+        return count - 1;
+    }
+
+    //number of slots on the wheel
+    public int size() {
+        return size;
+    }
+
+    //sum of all the weights on the wheel
+    public double getTotal() {
+        return total;
+    }
+
+}
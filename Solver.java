@@ -0,0 +1,50 @@
+/*
+ * What ACS and EAS have in common once they are built: a colony on a Problem
+ * that can be run to the end in one call, or one iteration at a time by a
+ * caller that wants to look at it (or stop it) in between. A caller that
+ * steps a colony should close it afterwards, to shut down its threads.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public interface Solver extends AutoCloseable {
+
+    //runs iterations until the colony stops, closes it and returns the best
+    //tour length
+    double solve();
+
+    //runs one iteration; returns false once the colony has stopped (see
+    //Termination), after which it does nothing
+    boolean step();
+
+    //the shared data this colony runs on
+    Problem getProblem();
+
+    //best tour length found so far
+    double getBestTourLength();
+
+    //copy of the best tour found so far, or null before the first iteration
+    int[] getBestTour();
+
+    //number of iterations run so far
+    int getIterationsRun();
+
+    //master seed of the run
+    long getSeed();
+
+    //why the colony stopped, or null while it can still step
+    Termination.Reason getStopReason();
+
+    //takes in a tour found elsewhere (every city once, the first repeated at
+    //the end), between iterations, as update says; returns true if it was
+    //shorter than the best tour and replaced it. The tour is copied, not kept
+    boolean receiveTour(int[] tour, IslandModel.Update update);
+
+    //shuts down the threads the colony made for itself
+    @Override
+    void close();
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Pheromone storage for very large instances. Only edges on a candidate list
+ * get their own cell (laid out like the candidate lists, n * k of them); every
+ * other edge shares one default level that evaporates along with the rest.
+ * Ants almost never leave their candidate lists, so deposits on edges without
+ * a cell are simply not recorded.
+ */
+package aco;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class SparsePheromoneMatrix extends PheromoneMatrix {
+
+    //lets wearAtomic compare-and-set single cells of the levels array
+    private static final VarHandle LEVEL = MethodHandles.arrayElementVarHandle(double[].class);
+
+    private final CandidateLists candidates;
+    private final int numCities;
+    private final int listSize;
+    private final double[] levels;
+    private double defaultLevel;
+
+    //creates cells for every candidate edge, all at initialLevel
+    public SparsePheromoneMatrix(CandidateLists candidates, double initialLevel) {
+        this.candidates = candidates;
+        this.numCities = candidates.getNumCities();
+        this.listSize = candidates.size();
+        levels = new double[numCities * listSize];
+        fill(initialLevel);
+    }
+
+    //returns the cell of source -> dest, or -1 if dest is not a candidate of source
+    private int slot(int source, int dest) {
+        for (int rank = 0; rank < listSize; rank++) {
+            if (candidates.get(source, rank) == dest) {
+                return source * listSize + rank;
+            }
+        }
+        return -1;
+    }
+
+    //stored level of the edge from source to dest. An edge is tracked if
+    //either end has the other on its list, so look in both rows
+    protected double getStored(int source, int dest) {
+        int cell = slot(source, dest);
+        if (cell < 0) {
+            cell = slot(dest, source);
+        }
+        return cell < 0 ? defaultLevel : levels[cell];
+    }
+
+    //stored level of the edge from city to its rank-th candidate
+    protected double getStoredCandidate(int city, int rank, int dest) {
+        return levels[city * listSize + rank];
+    }
+
+    //adds to the stored level of the edge from source to dest only
+    protected void addStored(int source, int dest, double newPhero) {
+        int cell = slot(source, dest);
+        if (cell < 0) {
+            cell = slot(dest, source);
+        }
+        if (cell >= 0) {
+            levels[cell] += newPhero;
+        }
+    }
+
+    //adds to the stored level of the edge in both directions
+    protected void depositStored(int cityA, int cityB, double newPhero) {
+        int ab = slot(cityA, cityB);
+        int ba = slot(cityB, cityA);
+        if (ab >= 0) {
+            levels[ab] += newPhero;
+        }
+        if (ba >= 0) {
+            levels[ba] += newPhero;
+        }
+    }
+
+    //wears the stored level of the edge (both directions) toward tO
+    protected void wearStored(int cityA, int cityB, double wearFactor, double tO) {
+        int ab = slot(cityA, cityB);
+        int ba = slot(cityB, cityA);
+        if (ab >= 0) {
+            levels[ab] = (1 - wearFactor) * levels[ab] + wearFactor * tO;
+        }
+        if (ba >= 0) {
+            levels[ba] = (1 - wearFactor) * levels[ba] + wearFactor * tO;
+        }
+    }
+
+    //same as wearStored, but safe to call while other threads are wearing or
+    //reading the same edge; each cell is updated with a compare-and-set loop
+    protected void wearStoredAtomic(int cityA, int cityB, double wearFactor, double tO) {
+        int ab = slot(cityA, cityB);
+        int ba = slot(cityB, cityA);
+        if (ab >= 0) {
+            wearCell(ab, wearFactor, tO);
+        }
+        if (ba >= 0) {
+            wearCell(ba, wearFactor, tO);
+        }
+    }
+
+    //lock-free local update of one cell
+    private void wearCell(int cell, double wearFactor, double tO) {
+        double oldLevel;
+        double newLevel;
+        do {
+            oldLevel = (double) LEVEL.getVolatile(levels, cell);
+            newLevel = (1 - wearFactor) * oldLevel + wearFactor * tO;
+        } while (!LEVEL.compareAndSet(levels, cell, oldLevel, newLevel));
+    }
+
+    //multiplies every stored level by factor
+    protected void multiplyStored(double factor) {
+        Kernels.scale(levels, 0, levels.length, factor);
+        defaultLevel *= factor;
+    }
+
+    //sets every stored level to level
+    protected void fillStored(double level) {
+        Arrays.fill(levels, level);
+        defaultLevel = level;
+    }
+
+    //the cells, then the default level as one more
+    public int getCellCount() {
+        return levels.length + 1;
+    }
+
+    //writes count cells, starting at cell first, to out as it stands
+    protected void writeCells(ByteBuffer out, int first, int count) {
+        int cells = Math.max(0, Math.min(count, levels.length - first));
+        out.asDoubleBuffer().put(levels, first, cells);
+        out.position(out.position() + 8 * cells);
+        if (cells < count) {
+            out.putDouble(defaultLevel);
+        }
+    }
+
+    //reads count cells, starting at cell first, from in
+    protected void readCells(ByteBuffer in, int first, int count) {
+        int cells = Math.max(0, Math.min(count, levels.length - first));
+        in.asDoubleBuffer().get(levels, first, cells);
+        in.position(in.position() + 8 * cells);
+        if (cells < count) {
+            defaultLevel = in.getDouble();
+        }
+    }
+
+    //getter for number of cities
+    public int getNumCities() {
+        return numCities;
+    }
+
+    //approximate heap used by the cells, in bytes
+    public long getFootprint() {
+        return 8L * levels.length;
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * One solve in a parameter sweep: which algorithm, which instance, the
+ * alpha/beta/rho (and ACS or EAS specific) parameters, and the seed. Jobs
+ * sharing a configuration differ only in their run number and seed, so a
+ * sweep can be regrouped however its results come back.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class SweepJob {
+
+    //the two colonies a job can run
+    public enum Algorithm {
+        ACS,
+        EAS
+    }
+
+    private final Algorithm algorithm;
+    private final String file;
+    private final int numAnts;
+    private final int numIter;
+    private final double alpha;
+    private final double beta;
+    private final double rho;
+    //q0 and epsilon for ACS, elitism for EAS
+    private final double q0;
+    private final double epsilon;
+    private final double elitism;
+    private final double optLength;
+    private final double percentOfOpt;
+    private final int configuration;
+    private final int run;
+    private final ColonyOptions options;
+
+    private SweepJob(Algorithm algorithm, String file, int numAnts, int numIter, double alpha, double beta,
+            double rho, double q0, double epsilon, double elitism, double optLength, double percentOfOpt,
+            int configuration, int run, long seed) {
+        this.algorithm = algorithm;
+        this.file = file;
+        this.numAnts = numAnts;
+        this.numIter = numIter;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.rho = rho;
+        this.q0 = q0;
+        this.epsilon = epsilon;
+        this.elitism = elitism;
+        this.optLength = optLength;
+        this.percentOfOpt = percentOfOpt;
+        this.configuration = configuration;
+        this.run = run;
+        this.options = new ColonyOptions().setSeed(seed);
+    }
+
+    //a job for ACS; configuration groups the runs that should be averaged together
+    public static SweepJob acs(String file, int numAnts, int numIter, double alpha, double beta, double rho,
+            double q0, double epsilon, double optLength, double percentOfOpt, int configuration, int run,
+            long seed) {
+        return new SweepJob(Algorithm.ACS, file, numAnts, numIter, alpha, beta, rho, q0, epsilon, 0,
+                optLength, percentOfOpt, configuration, run, seed);
+    }
+
+    //a job for EAS; configuration groups the runs that should be averaged together
+    public static SweepJob eas(String file, int numAnts, int numIter, double alpha, double beta, double rho,
+            double elitism, double optLength, double percentOfOpt, int configuration, int run, long seed) {
+        return new SweepJob(Algorithm.EAS, file, numAnts, numIter, alpha, beta, rho, 0, 0, elitism,
+                optLength, percentOfOpt, configuration, run, seed);
+    }
+
+    //builds the colony for this job on a problem it may share with other jobs
+    Solver createSolver(Problem problem) {
+        if (algorithm == Algorithm.ACS) {
+            return new ACS(problem, numAnts, numIter, alpha, beta, rho, q0, epsilon, optLength, percentOfOpt,
+                    options);
+        }
+        return new EAS(problem, numAnts, numIter, alpha, beta, rho, elitism, optLength, percentOfOpt, options);
+    }
+
+    //jobs with the same key can share one Problem
+    String getProblemKey() {
+        return file + "|" + options.isLowMemory() + "|" + options.getCandidateListSize();
+    }
+
+    //getter for the algorithm
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    //getter for the instance file
+    public String getFile() {
+        return file;
+    }
+
+    //getter for the number of ants
+    public int getNumAnts() {
+        return numAnts;
+    }
+
+    //getter for alpha
+    public double getAlpha() {
+        return alpha;
+    }
+
+    //getter for beta
+    public double getBeta() {
+        return beta;
+    }
+
+    //getter for rho
+    public double getRho() {
+        return rho;
+    }
+
+    //getter for the known optimal length of the instance
+    public double getOptLength() {
+        return optLength;
+    }
+
+    //getter for the configuration this run belongs to
+    public int getConfiguration() {
+        return configuration;
+    }
+
+    //getter for the run number within the configuration
+    public int getRun() {
+        return run;
+    }
+
+    //the colony options of this job, seed included; change them before the
+    //sweep starts. Jobs use one thread each unless told otherwise, since the
+    //sweep already keeps every core busy.
+    public ColonyOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return algorithm + " " + file + " alpha=" + alpha + " beta=" + beta + " rho=" + rho + " run=" + run;
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * What one sweep job produced. Results carry their job, so they can be
+ * collected in whatever order the jobs finish and grouped afterwards.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class SweepResult {
+
+    private final SweepJob job;
+    private final double bestTourLength;
+    private final double wallSeconds;
+    private final double cpuSeconds;
+    private final Throwable error;
+
+    //creates the result of a job; error is null if the solve finished
+    public SweepResult(SweepJob job, double bestTourLength, double wallSeconds, double cpuSeconds,
+            Throwable error) {
+        this.job = job;
+        this.bestTourLength = bestTourLength;
+        this.wallSeconds = wallSeconds;
+        this.cpuSeconds = cpuSeconds;
+        this.error = error;
+    }
+
+    //getter for the job that was run
+    public SweepJob getJob() {
+        return job;
+    }
+
+    //getter for the best tour length, NaN if the job failed
+    public double getBestTourLength() {
+        return bestTourLength;
+    }
+
+    //best tour length over the known optimum
+    public double getTourRatio() {
+        return bestTourLength / job.getOptLength();
+    }
+
+    //seconds from the start to the end of the solve
+    public double getWallSeconds() {
+        return wallSeconds;
+    }
+
+    //CPU seconds spent by the thread that ran the solve. Unlike wall time this
+    //does not grow when other jobs compete for the cores. It is NaN if the JVM
+    //cannot measure thread CPU time.
+    public double getCpuSeconds() {
+        return cpuSeconds;
+    }
+
+    //getter for what made the job fail, null if it did not
+    public Throwable getError() {
+        return error;
+    }
+
+    //true if the solve finished
+    public boolean isOk() {
+        return error == null;
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Runs the jobs of a parameter sweep side by side. At most maxJobs solves run
+ * at once (one per core by default), and a solve only starts once its
+ * estimated memory fits in what the running ones left of the budget, so a
+ * sweep over large instances does not run the heap out. Every job records the
+ * CPU time of the thread that ran it, which stays meaningful when the wall
+ * clock is shared with other jobs. Jobs on the same instance share one
+ * Problem, so the distances are loaded (and paid for) once per sweep, and
+ * dropped when the last job on the instance is done.
+ *
+ * Problems take at most half the budget between them and a job at most the
+ * other half, so a job waiting for memory only ever waits for running jobs.
+ */
+package aco;
+
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class SweepScheduler {
+
+    private static final long MEGABYTE = 1 << 20;
+
+    private final int maxJobs;
+    private final long memoryBudget;
+    //memory budget in megabytes, handed out to running jobs
+    private final Semaphore memory;
+    private final int memoryPermits;
+    //megabytes held by loaded problems, at most half of memoryPermits
+    private int problemPermits;
+
+    //a problem the jobs of a sweep share, loaded by the first job that needs
+    //it and dropped when the last one is done
+    private final class SharedProblem {
+        //holds the loaded problem; null once every job on it is done
+        private volatile FutureTask<Problem> load;
+        private final AtomicInteger jobsLeft = new AtomicInteger();
+        private volatile int permits;
+
+        private SharedProblem(SweepJob job) {
+            load = new FutureTask<Problem>(() -> {
+                Problem problem = Problem.load(job.getFile(), job.getOptions());
+                permits = reserveForProblem(toPermits(problem.getFootprint()));
+                return problem;
+            });
+        }
+
+        //the problem, loading it on this thread if no other job has started to
+        private Problem get() throws InterruptedException {
+            load.run();
+            try {
+                return load.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Could not load problem", e.getCause());
+            }
+        }
+
+        //called once by every job on the problem, whether it ran or not
+        private void jobDone() {
+            if (jobsLeft.decrementAndGet() == 0) {
+                //let go of the problem before its memory goes back, so the
+                //budget never counts a matrix that is still reachable
+                load = null;
+                releaseForProblem(permits);
+                permits = 0;
+            }
+        }
+    }
+
+    //scheduler with one job per core and three quarters of the heap
+    public SweepScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 4 * 3);
+    }
+
+    //scheduler running up to maxJobs jobs in at most memoryBudget bytes
+    public SweepScheduler(int maxJobs, long memoryBudget) {
+        if (maxJobs < 1) {
+            throw new IllegalArgumentException("Need at least one job at a time: " + maxJobs);
+        }
+        if (memoryBudget < MEGABYTE) {
+            throw new IllegalArgumentException("Memory budget too small: " + memoryBudget);
+        }
+        this.maxJobs = maxJobs;
+        this.memoryBudget = memoryBudget;
+        this.memoryPermits = (int) Math.min(Integer.MAX_VALUE, memoryBudget / MEGABYTE);
+        this.memory = new Semaphore(memoryPermits, true);
+    }
+
+    //runs every job and returns their results in the order of jobs, whatever
+    //order they finished in. A job that fails gets a result holding its error
+    //and does not stop the others.
+    public List<SweepResult> run(List<SweepJob> jobs) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads.isCurrentThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+
+        //count the jobs on each problem up front, so it is known when the
+        //last one is done
+        Map<String, SharedProblem> problems = new HashMap<String, SharedProblem>();
+        for (SweepJob job : jobs) {
+            problems.computeIfAbsent(job.getProblemKey(), key -> new SharedProblem(job)).jobsLeft.incrementAndGet();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(maxJobs, Math.max(1, jobs.size())));
+        try {
+            List<Future<SweepResult>> pending = new ArrayList<Future<SweepResult>>(jobs.size());
+            for (SweepJob job : jobs) {
+                SharedProblem problem = problems.get(job.getProblemKey());
+                pending.add(pool.submit(() -> {
+                    try {
+                        return runJob(job, problem, threads);
+                    } finally {
+                        problem.jobDone();
+                    }
+                }));
+            }
+
+            List<SweepResult> results = new ArrayList<SweepResult>(jobs.size());
+            for (Future<SweepResult> result : pending) {
+                results.add(result.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the sweep was running", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sweep job failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //runs one job on the current thread once there is memory for it
+    private SweepResult runJob(SweepJob job, SharedProblem shared, ThreadMXBean threads) throws InterruptedException {
+        Problem problem;
+        try {
+            problem = shared.get();
+        } catch (RuntimeException e) {
+            return new SweepResult(job, Double.NaN, 0, 0, e);
+        }
+
+        int permits = toPermits(estimateBytes(problem.getNumCities(), job.getNumAnts(), job.getOptions()));
+        //cannot happen while problems keep to their half, but waiting for it
+        //would hang the sweep
+        if (permits > memoryPermits - reservedForProblems()) {
+            return new SweepResult(job, Double.NaN, 0, 0,
+                    new IllegalStateException("Job needs " + permits + " MB, more than the problems left of the budget"));
+        }
+
+        memory.acquire(permits);
+        try {
+            boolean cpuTime = threads.isCurrentThreadCpuTimeSupported();
+            long cpuStart = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+            long wallStart = System.nanoTime();
+
+            double length = Double.NaN;
+            Throwable error = null;
+            try {
+                length = job.createSolver(problem).solve();
+            } catch (RuntimeException | OutOfMemoryError e) {
+                error = e;
+            }
+
+            double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+            double cpuSeconds = cpuTime ? (threads.getCurrentThreadCpuTime() - cpuStart) / 1e9 : Double.NaN;
+            return new SweepResult(job, length, wallSeconds, cpuSeconds, error);
+        } finally {
+            memory.release(permits);
+        }
+    }
+
+    //takes up to wanted megabytes for a loaded problem and returns how many it
+    //got. It takes what is free rather than waiting, since the jobs running
+    //now may be the ones that need it, and keeps problems to half the budget
+    //so that jobs always have the other half.
+    private synchronized int reserveForProblem(int wanted) {
+        int permits = Math.min(wanted, Math.min(memoryPermits / 2 - problemPermits, memory.availablePermits()));
+        if (permits > 0 && memory.tryAcquire(permits)) {
+            problemPermits += permits;
+            return permits;
+        }
+        return 0;
+    }
+
+    //gives the memory of a problem back once its last job is done
+    private synchronized void releaseForProblem(int permits) {
+        memory.release(permits);
+        problemPermits -= permits;
+    }
+
+    //megabytes loaded problems hold right now
+    private synchronized int reservedForProblems() {
+        return problemPermits;
+    }
+
+    //megabytes to reserve for bytes, at most half the budget so that a job
+    //bigger than the budget still runs (on its own, next to its problem)
+    private int toPermits(long bytes) {
+        return (int) Math.min(bytes / MEGABYTE + 1, memoryPermits / 2);
+    }
+
+    /**
+     * Rough size of the heap a colony on numCities cities needs on top of its
+     * Problem: the pheromone matrix (or its candidate-list version in low
+     * memory mode), the cached edge weights and the ants.
+     */
+    public static long estimateBytes(int numCities, int numAnts, ColonyOptions options) {
+        long n = numCities;
+        long k = Math.min(options.getCandidateListSize(), Math.max(0, numCities - 1));
+        boolean lowMemory = options.isLowMemory() || numCities > DistanceMatrix.MAX_DENSE_CITIES;
+
+        long cell = options.isSinglePrecision() ? 4 : 8;
+
+        //pheromone per candidate edge, or for every edge
+        long bytes = lowMemory ? n * k * cell : n * n * cell;
+        //eta^beta and choice info per candidate edge, plus alias tables
+        bytes += n * k * (cell + cell + 12);
+        //tour, unvisited set and roulette wheel per ant
+        bytes += numAnts * n * 4 * 5;
+        return bytes;
+    }
+
+    //getter for the number of jobs run at once
+    public int getMaxJobs() {
+        return maxJobs;
+    }
+
+    //getter for the memory budget in bytes
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Decides when a colony stops. Besides the iteration limit and the percentage
+ * of a known optimum the colonies always had, ColonyOptions can set a
+ * wall-clock budget (300 seconds by default, as before), a CPU budget, a
+ * target length that needs no optimum, a number of iterations without
+ * improvement, and a minimum lambda branching factor. All of them are checked
+ * after each iteration, so a colony that runs out of budget stops with the
+ * best tour of the iterations it finished, and a solver can always be asked
+ * for it.
+ *
+ * The CPU budget counts only the colony's own work: the thread that steps it
+ * and the jobs it hands to its pool, each measured with the thread CPU clock.
+ * Colonies sharing a JVM or a pool do not use up each other's budget.
+ */
+package aco;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class Termination {
+
+    //why a colony stopped
+    public enum Reason {
+        //ran the number of iterations it was given
+        ITERATIONS,
+        //came within the given percentage of the optimum
+        OPTIMUM,
+        //found a tour as short as the target length
+        TARGET_LENGTH,
+        //used up its wall-clock budget
+        TIME_LIMIT,
+        //used up its CPU budget
+        CPU_LIMIT,
+        //went too many iterations without a better tour
+        NO_IMPROVEMENT,
+        //the branching factor fell to the minimum
+        STAGNATION
+    }
+
+    private final int numIter;
+    private final double optLength;
+    private final double percentOfOpt;
+    private final long timeLimitNanos;
+    private final long cpuLimitNanos;
+    private final double targetLength;
+    private final int maxIterationsWithoutImprovement;
+    private final double minBranchingFactor;
+
+    //CPU time the colony's work has used since its first step
+    private final LongAdder cpuUsed = new LongAdder();
+    private boolean started;
+    private double bestLength = Double.MAX_VALUE;
+    private int lastImprovement;
+    private double branchingFactor = Double.NaN;
+    //set once the branching factor has been above the minimum
+    private boolean spread;
+
+    public Termination(ColonyOptions options, int numIter, double optLength, double percentOfOpt) {
+        this.numIter = numIter;
+        this.optLength = optLength;
+        this.percentOfOpt = percentOfOpt;
+        this.timeLimitNanos = options.getTimeLimitMillis() * 1000000;
+        this.cpuLimitNanos = options.getCpuLimitMillis() * 1000000;
+        this.targetLength = options.getTargetLength();
+        this.maxIterationsWithoutImprovement = options.getMaxIterationsWithoutImprovement();
+        this.minBranchingFactor = options.getMinBranchingFactor();
+        if (cpuLimitNanos > 0) {
+            enableThreadCpuTime();
+        }
+    }
+
+    //true if the options ask for the branching factor, so the colony has to
+    //keep a BranchingFactor up to date
+    public static boolean needsBranchingFactor(ColonyOptions options) {
+        return options.getMinBranchingFactor() > 0;
+    }
+
+    //marks the first iteration, the first time it is called
+    public void start(int iterationsRun) {
+        if (!started) {
+            lastImprovement = iterationsRun;
+            started = true;
+        }
+    }
+
+    //CPU time of the calling thread so far, to hand to charge once the
+    //colony's work on it is done (0 if there is no CPU budget)
+    public long cpuMark() {
+        return cpuLimitNanos > 0 ? threadCpuNanos() : 0;
+    }
+
+    //counts the CPU time the calling thread used since mark toward the budget
+    public void charge(long mark) {
+        if (cpuLimitNanos > 0) {
+            cpuUsed.add(threadCpuNanos() - mark);
+        }
+    }
+
+    //wraps a job the colony hands to its pool so the CPU time it uses there
+    //counts toward the budget. A job the stepping thread ends up running
+    //itself is already inside that thread's mark and is not counted twice.
+    public <T> Callable<T> charged(Callable<T> job) {
+        if (cpuLimitNanos <= 0) {
+            return job;
+        }
+        Thread caller = Thread.currentThread();
+        return () -> {
+            if (Thread.currentThread() == caller) {
+                return job.call();
+            }
+            long mark = threadCpuNanos();
+            try {
+                return job.call();
+            } finally {
+                cpuUsed.add(threadCpuNanos() - mark);
+            }
+        };
+    }
+
+    /**
+     * Checks the budgets after an iteration. Returns why the colony should
+     * stop, or null if it should go on. branching may be null if the options
+     * do not ask for it.
+     */
+    public Reason check(int iterationsRun, double bestTourLength, long elapsedNanos, BranchingFactor branching) {
+        if (bestTourLength < bestLength) {
+            bestLength = bestTourLength;
+            lastImprovement = iterationsRun;
+        }
+
+        if (optLength > 0 && bestTourLength / optLength <= percentOfOpt) {
+            return Reason.OPTIMUM;
+        }
+        if (bestTourLength <= targetLength) {
+            return Reason.TARGET_LENGTH;
+        }
+        if (iterationsRun >= numIter) {
+            return Reason.ITERATIONS;
+        }
+        if (maxIterationsWithoutImprovement > 0
+                && iterationsRun - lastImprovement >= maxIterationsWithoutImprovement) {
+            return Reason.NO_IMPROVEMENT;
+        }
+        //a colony that has not spread its pheromone yet has not stagnated
+        //either: ACS only deposits on the best tour and wears toward the
+        //starting level, so it may be below the minimum from the start
+        if (branching != null) {
+            branchingFactor = branching.get();
+            if (branchingFactor > minBranchingFactor) {
+                spread = true;
+            } else if (spread) {
+                return Reason.STAGNATION;
+            }
+        }
+        if (timeLimitNanos > 0 && elapsedNanos > timeLimitNanos) {
+            return Reason.TIME_LIMIT;
+        }
+        if (cpuLimitNanos > 0 && cpuUsed.sum() > cpuLimitNanos) {
+            return Reason.CPU_LIMIT;
+        }
+        return null;
+    }
+
+    //branching factor at the last check, NaN if it is not tracked
+    public double getBranchingFactor() {
+        return branchingFactor;
+    }
+
+    //iteration that last found a better tour, as of the last check
+    public int getLastImprovement() {
+        return lastImprovement;
+    }
+
+    //turns on the thread CPU clock, which some JVMs leave off
+    private static void enableThreadCpuTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isCurrentThreadCpuTimeSupported()) {
+            throw new UnsupportedOperationException("This JVM does not report thread CPU time");
+        }
+        if (!threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    //CPU time the calling thread has used
+    private static long threadCpuNanos() {
+        return ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * The messages distributed colonies exchange over TCP (see Coordinator and
+ * Worker). Every message starts with a one byte type; numbers are big-endian.
+ *
+ *   HELLO  worker to coordinator: magic, version, number of cities (ints)
+ *   TOUR   either way: iteration (int), length (double), number of entries
+ *          (int), then the tour as that many ints, the first city repeated
+ *          at the end
+ *   DONE   worker to coordinator: 1 if the worker reached its target, else 0
+ *          (one byte); its last TOUR comes just before
+ *   STOP   coordinator to worker: no body
+ *
+ * A tour of n cities is 4n + 21 bytes on the wire.
+ */
+package aco;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public final class TourWire {
+
+    public static final byte HELLO = 1;
+    public static final byte TOUR = 2;
+    public static final byte DONE = 3;
+    public static final byte STOP = 4;
+
+    private static final int MAGIC = 0x41434F54;
+    private static final int VERSION = 1;
+
+    //a tour as it came off the wire
+    public static final class Tour {
+        private final int iteration;
+        private final double length;
+        private final int[] cities;
+
+        Tour(int iteration, double length, int[] cities) {
+            this.iteration = iteration;
+            this.length = length;
+            this.cities = cities;
+        }
+
+        //iteration of the sender the tour was sent after
+        public int getIteration() {
+            return iteration;
+        }
+
+        //length as the sender measured it
+        public double getLength() {
+            return length;
+        }
+
+        //the cities, first city repeated at the end
+        public int[] getCities() {
+            return cities;
+        }
+    }
+
+    private TourWire() {
+    }
+
+    //writes a HELLO for a colony on numCities cities
+    public static void writeHello(DataOutputStream out, int numCities) throws IOException {
+        out.writeByte(HELLO);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(numCities);
+        out.flush();
+    }
+
+    //reads the body of a HELLO and returns the number of cities
+    public static int readHello(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a colony worker, or a different version");
+        }
+        return in.readInt();
+    }
+
+    //writes a TOUR
+    public static void writeTour(DataOutputStream out, int iteration, double length, int[] tour)
+            throws IOException {
+        ByteBuffer cities = ByteBuffer.allocate(4 * tour.length);
+        cities.asIntBuffer().put(tour);
+        out.writeByte(TOUR);
+        out.writeInt(iteration);
+        out.writeDouble(length);
+        out.writeInt(tour.length);
+        out.write(cities.array());
+        out.flush();
+    }
+
+    //reads the body of a TOUR, which must be a closed tour of numCities cities
+    public static Tour readTour(DataInputStream in, int numCities) throws IOException {
+        int iteration = in.readInt();
+        double length = in.readDouble();
+        int count = in.readInt();
+        if (count != numCities + 1) {
+            throw new IOException("Tour of " + count + " entries, expected " + (numCities + 1));
+        }
+        byte[] bytes = new byte[4 * count];
+        in.readFully(bytes);
+        int[] cities = new int[count];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(cities);
+
+        //every city once, and back to the first
+        boolean[] seen = new boolean[numCities];
+        for (int i = 0; i < numCities; i++) {
+            int city = cities[i];
+            if (city < 0 || city >= numCities || seen[city]) {
+                throw new IOException("Tour visits city " + city + " more than once or does not exist");
+            }
+            seen[city] = true;
+        }
+        if (cities[numCities] != cities[0]) {
+            throw new IOException("Tour does not return to its first city");
+        }
+        return new Tour(iteration, length, cities);
+    }
+
+    //writes a DONE
+    public static void writeDone(DataOutputStream out, boolean reachedTarget) throws IOException {
+        out.writeByte(DONE);
+        out.writeBoolean(reachedTarget);
+        out.flush();
+    }
+
+    //reads the body of a DONE
+    public static boolean readDone(DataInputStream in) throws IOException {
+        return in.readBoolean();
+    }
+
+    //writes a STOP
+    public static void writeStop(DataOutputStream out) throws IOException {
+        out.writeByte(STOP);
+        out.flush();
+    }
+
+}
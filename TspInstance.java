@@ -0,0 +1,129 @@
+/*
+ * Everything read out of a TSPLIB file: the city coordinates, the distance
+ * function, and, for EXPLICIT instances or when a binary cache supplied one,
+ * the full distance matrix. That matrix is kept in floats, which is exact: the
+ * computed distances are whole numbers, and floats hold every whole number up
+ * to 2^24. An instance spread wide enough for longer distances has them
+ * computed on the fly instead, and EXPLICIT weights a float would round are
+ * refused by the loader.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class TspInstance {
+
+    private final String name;
+    private final EdgeWeightType weightType;
+    private final int numCities;
+    private final double[] xs;
+    private final double[] ys;
+    private final float[] lengths;
+    private final boolean exactFloatLengths;
+
+    //every whole number up to this one is a float
+    private static final double MAX_EXACT_FLOAT = 1 << 24;
+
+    //creates an instance; lengths is a row-major n * n matrix or null
+    public TspInstance(String name, EdgeWeightType weightType, double[] xs, double[] ys, float[] lengths) {
+        this.name = name;
+        this.weightType = weightType;
+        this.numCities = xs.length;
+        this.xs = xs;
+        this.ys = ys;
+        this.lengths = lengths;
+        this.exactFloatLengths = hasExactFloatLengths(weightType, xs, ys);
+        if (weightType == EdgeWeightType.EXPLICIT && lengths == null) {
+            throw new IllegalArgumentException("EXPLICIT instance without an EDGE_WEIGHT_SECTION: " + name);
+        }
+    }
+
+    //builds the distance storage the colonies run on. EXPLICIT instances can
+    //only use their matrix; the others reuse a cached one unless asked to
+    //compute distances on the fly
+    public DistanceMatrix createDistances(boolean computeOnTheFly) {
+        if (weightType == EdgeWeightType.EXPLICIT) {
+            return new DenseDistanceMatrix(numCities, lengths);
+        }
+        if (computeOnTheFly || numCities > DistanceMatrix.MAX_DENSE_CITIES || !exactFloatLengths) {
+            return new ComputedDistanceMatrix(xs, ys, weightType);
+        }
+        if (lengths != null) {
+            return new DenseDistanceMatrix(numCities, lengths);
+        }
+        return new DenseDistanceMatrix(xs, ys, weightType);
+    }
+
+    //creates City objects for every city (numbered from 1, like the file)
+    public City[] getCities() {
+        City[] cities = new City[numCities];
+        for (int i = 0; i < numCities; i++) {
+            cities[i] = new City(i + 1, xs[i], ys[i]);
+        }
+        return cities;
+    }
+
+    //true if a grid search over the coordinates finds the nearest neighbours
+    public boolean hasPlanarCoordinates() {
+        return weightType.isPlanar();
+    }
+
+    //true if a float matrix holds every distance of the instance exactly
+    public boolean hasExactFloatLengths() {
+        return exactFloatLengths;
+    }
+
+    //true if a float matrix would hold every distance between the given cities
+    //exactly. Computed distances are whole numbers no longer than the diagonal
+    //of the cities' bounding box (GEO ones no longer than half the earth), and
+    //EXPLICIT weights are checked as they are read.
+    public static boolean hasExactFloatLengths(EdgeWeightType weightType, double[] xs, double[] ys) {
+        if (weightType == EdgeWeightType.EXPLICIT || weightType == EdgeWeightType.GEO) {
+            return true;
+        }
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < xs.length; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        return xs.length == 0 || Math.hypot(maxX - minX, maxY - minY) + 1 < MAX_EXACT_FLOAT;
+    }
+
+    //getter for the name in the file header
+    public String getName() {
+        return name;
+    }
+
+    //getter for the distance function
+    public EdgeWeightType getWeightType() {
+        return weightType;
+    }
+
+    //getter for number of cities
+    public int getNumCities() {
+        return numCities;
+    }
+
+    //getter for the x coordinates (shared, do not modify)
+    public double[] getXs() {
+        return xs;
+    }
+
+    //getter for the y coordinates (shared, do not modify)
+    public double[] getYs() {
+        return ys;
+    }
+
+    //getter for the full distance matrix, null if the distances are computed
+    public float[] getLengths() {
+        return lengths;
+    }
+
+}
@@ -0,0 +1,543 @@
+/*
+ * Reads TSPLIB files (EUC_2D, CEIL_2D, ATT, GEO and EXPLICIT weights) for both
+ * colonies. The file is read in one go and tokenized by hand, with no regex
+ * and no String per number. Given a cache directory, the first load of a file
+ * writes a binary copy (coordinates plus, for instances up to
+ * MAX_CACHED_DISTANCE_CITIES, the full distance matrix) into it with the
+ * CACHE_SUFFIX extension. Later loads memory-map that copy instead of parsing
+ * again, as long as the .tsp file has not changed since. Loads for low memory mode leave the matrix out, both
+ * when writing the copy and when reading it, unless the file gives explicit
+ * weights.
+ */
+package aco;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public final class TspLoader {
+
+    public static final String CACHE_SUFFIX = ".acobin";
+
+    //largest instance whose distance matrix goes into the cache (256 MB)
+    public static final int MAX_CACHED_DISTANCE_CITIES = 8000;
+
+    //"ACOB" followed by the layout version
+    private static final int MAGIC = 0x41434F42;
+    private static final int VERSION = 1;
+
+    //powers of ten that are exact as doubles
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10.0;
+        }
+    }
+
+    private TspLoader() {
+    }
+
+    //loads fileName without a cache
+    public static TspInstance load(String fileName) throws IOException {
+        return load(fileName, false);
+    }
+
+    //loads fileName, with or without a binary cache next to it
+    public static TspInstance load(String fileName, boolean useCache) throws IOException {
+        return load(fileName, useCache ? Paths.get(fileName).toAbsolutePath().getParent() : null, true);
+    }
+
+    //loads fileName, using (and if needed writing) a binary copy in cacheDir
+    //unless it is null; without withLengths the instance only holds a
+    //distance matrix if the file gives explicit weights
+    public static TspInstance load(String fileName, Path cacheDir, boolean withLengths) throws IOException {
+        Path source = Paths.get(fileName);
+        boolean useCache = cacheDir != null;
+        Path cache = useCache ? cacheFile(source, cacheDir) : null;
+
+        if (useCache) {
+            TspInstance cached = readCache(source, cache, withLengths);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        TspInstance instance = parse(source);
+        if (useCache) {
+            instance = writeCache(source, cache, instance, withLengths);
+        }
+        return instance;
+    }
+
+    /**
+     * Parses a TSPLIB file.
+     */
+    public static TspInstance parse(Path source) throws IOException {
+        Cursor in = new Cursor(Files.readAllBytes(source), source.toString());
+
+        String name = source.getFileName().toString();
+        int numCities = -1;
+        EdgeWeightType weightType = null;
+        String weightFormat = "FUNCTION";
+        double[] xs = null;
+        double[] ys = null;
+        float[] lengths = null;
+
+        while (in.skipWhitespace()) {
+            String keyword = in.nextKeyword();
+
+            switch (keyword) {
+                case "EOF":
+                    in.skipToEnd();
+                    break;
+                case "NODE_COORD_SECTION":
+                case "DISPLAY_DATA_SECTION":
+                    in.requireDimension(numCities, keyword);
+                    //display data is only used when the file has no real coordinates
+                    if (xs == null || keyword.equals("NODE_COORD_SECTION")) {
+                        xs = new double[numCities];
+                        ys = new double[numCities];
+                        in.readCoordinates(xs, ys);
+                    } else {
+                        in.readCoordinates(new double[numCities], new double[numCities]);
+                    }
+                    break;
+                case "EDGE_WEIGHT_SECTION":
+                    in.requireDimension(numCities, keyword);
+                    lengths = in.readWeights(numCities, weightFormat);
+                    break;
+                case "FIXED_EDGES_SECTION":
+                    in.skipSection();
+                    break;
+                default: {
+                    String value = in.restOfLine();
+                    switch (keyword) {
+                        case "NAME":
+                            name = value;
+                            break;
+                        case "TYPE":
+                            if (!value.equals("TSP")) {
+                                throw in.error("Only symmetric TSP instances are supported, not " + value);
+                            }
+                            break;
+                        case "DIMENSION":
+                            numCities = parseInt(in, value);
+                            break;
+                        case "EDGE_WEIGHT_TYPE":
+                            weightType = EdgeWeightType.parse(value);
+                            break;
+                        case "EDGE_WEIGHT_FORMAT":
+                            weightFormat = value;
+                            break;
+                        default:
+                            //COMMENT, DISPLAY_DATA_TYPE, NODE_COORD_TYPE and friends
+                            break;
+                    }
+                }
+            }
+        }
+
+        if (numCities < 1) {
+            throw in.error("Missing DIMENSION");
+        }
+        if (weightType == null) {
+            weightType = lengths != null ? EdgeWeightType.EXPLICIT : EdgeWeightType.EUC_2D;
+        }
+        if (weightType != EdgeWeightType.EXPLICIT && xs == null) {
+            throw in.error("Missing NODE_COORD_SECTION");
+        }
+        if (xs == null) {
+            xs = new double[numCities];
+            ys = new double[numCities];
+        }
+        return new TspInstance(name, weightType, xs, ys, lengths);
+    }
+
+    //the copy of source in cacheDir. Next to the source it is the file name
+    //plus CACHE_SUFFIX; in a shared directory the name also carries a hash
+    //of the source's path, so files of the same name from different
+    //directories do not overwrite each other
+    private static Path cacheFile(Path source, Path cacheDir) {
+        Path absolute = source.toAbsolutePath().normalize();
+        String name = absolute.getFileName().toString();
+        if (cacheDir.toAbsolutePath().normalize().equals(absolute.getParent())) {
+            return cacheDir.resolve(name + CACHE_SUFFIX);
+        }
+        return cacheDir.resolve(name + "-" + Integer.toHexString(absolute.toString().hashCode()) + CACHE_SUFFIX);
+    }
+
+    //parses a header value that has to be a whole number
+    private static int parseInt(Cursor in, String value) throws IOException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw in.error("Expected a number, found " + value);
+        }
+    }
+
+    //returns the cached copy of source, or null if there is none, it is stale
+    //or it was written without the distance matrix withLengths asks for
+    private static TspInstance readCache(Path source, Path cache, boolean withLengths) throws IOException {
+        if (!Files.isRegularFile(cache)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < 40 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != Files.size(source)
+                    || buffer.getLong() != Files.getLastModifiedTime(source).toMillis()) {
+                return null;
+            }
+
+            //a damaged or foreign file must not size the arrays below
+            int weightOrdinal = buffer.getInt();
+            int numCities = buffer.getInt();
+            boolean hasLengths = buffer.getInt() == 1;
+            int nameLength = buffer.getInt();
+            if (weightOrdinal < 0 || weightOrdinal >= EdgeWeightType.values().length
+                    || nameLength < 0 || nameLength > buffer.remaining()) {
+                return null;
+            }
+            EdgeWeightType weightType = EdgeWeightType.values()[weightOrdinal];
+            byte[] nameBytes = new byte[nameLength];
+            buffer.get(nameBytes);
+            buffer.position(align(buffer.position()));
+            if (numCities < 1 || (hasLengths && numCities > DistanceMatrix.MAX_DENSE_CITIES)
+                    || 16L * numCities + (hasLengths ? 4L * numCities * numCities : 0) > buffer.remaining()) {
+                return null;
+            }
+
+            double[] xs = new double[numCities];
+            double[] ys = new double[numCities];
+            DoubleBuffer coordinates = buffer.asDoubleBuffer();
+            coordinates.get(xs).get(ys);
+            buffer.position(buffer.position() + 16 * numCities);
+
+            boolean wanted = weightType == EdgeWeightType.EXPLICIT || (withLengths
+                    && numCities <= MAX_CACHED_DISTANCE_CITIES && TspInstance.hasExactFloatLengths(weightType, xs, ys));
+            if (wanted && !hasLengths) {
+                //written by a low memory load; write it again with the matrix
+                return null;
+            }
+            float[] lengths = null;
+            if (wanted) {
+                lengths = new float[numCities * numCities];
+                buffer.asFloatBuffer().get(lengths);
+            }
+
+            return new TspInstance(new String(nameBytes, StandardCharsets.UTF_8), weightType, xs, ys, lengths);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            //truncated or from another layout; parse the source again
+            return null;
+        }
+    }
+
+    //writes the binary copy of instance next to source and returns the instance,
+    //with its distance matrix filled in if one was cached
+    private static TspInstance writeCache(Path source, Path cache, TspInstance instance, boolean withLengths) {
+        int numCities = instance.getNumCities();
+        float[] lengths = instance.getLengths();
+        if (lengths == null && withLengths && numCities <= MAX_CACHED_DISTANCE_CITIES
+                && instance.hasExactFloatLengths()) {
+            lengths = DenseDistanceMatrix.computeLengths(instance.getXs(), instance.getYs(),
+                    instance.getWeightType());
+            instance = new TspInstance(instance.getName(), instance.getWeightType(), instance.getXs(),
+                    instance.getYs(), lengths);
+        }
+
+        byte[] nameBytes = instance.getName().getBytes(StandardCharsets.UTF_8);
+        int header = align(36 + nameBytes.length);
+        long size = header + 16L * numCities + (lengths == null ? 0 : 4L * lengths.length);
+
+        Path temp = null;
+        try {
+            Path dir = cache.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, cache.getFileName().toString(), ".tmp");
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION);
+                buffer.putLong(Files.size(source));
+                buffer.putLong(Files.getLastModifiedTime(source).toMillis());
+                buffer.putInt(instance.getWeightType().ordinal());
+                buffer.putInt(numCities);
+                buffer.putInt(lengths == null ? 0 : 1);
+                buffer.putInt(nameBytes.length);
+                buffer.put(nameBytes);
+                buffer.position(header);
+
+                buffer.asDoubleBuffer().put(instance.getXs()).put(instance.getYs());
+                buffer.position(header + 16 * numCities);
+                if (lengths != null) {
+                    buffer.asFloatBuffer().put(lengths);
+                }
+                buffer.force();
+            }
+
+            //temp files are private; give the cache the same access as the .tsp
+            try {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(source));
+            } catch (UnsupportedOperationException e) {
+                //not a POSIX file system, keep the defaults
+            }
+
+            //other runs may be loading the same file, so swap the finished copy in
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Could not write instance cache " + cache + ": " + e.getMessage());
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    //nothing more we can do
+                }
+            }
+        }
+        return instance;
+    }
+
+    //rounds a byte offset up to a multiple of 8
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    //walks through the bytes of a TSPLIB file
+    private static final class Cursor {
+
+        private final byte[] data;
+        private final String fileName;
+        private int pos;
+
+        Cursor(byte[] data, String fileName) {
+            this.data = data;
+            this.fileName = fileName;
+        }
+
+        //skips spaces and line breaks, returns false at the end of the file
+        boolean skipWhitespace() {
+            while (pos < data.length && data[pos] <= ' ') {
+                pos++;
+            }
+            return pos < data.length;
+        }
+
+        //reads a header keyword, which ends at a colon or whitespace
+        String nextKeyword() {
+            int start = pos;
+            while (pos < data.length && data[pos] > ' ' && data[pos] != ':') {
+                pos++;
+            }
+            return new String(data, start, pos - start, StandardCharsets.US_ASCII);
+        }
+
+        //reads the value after a keyword up to the end of the line
+        String restOfLine() {
+            while (pos < data.length && (data[pos] == ' ' || data[pos] == '\t' || data[pos] == ':')) {
+                pos++;
+            }
+            int start = pos;
+            while (pos < data.length && data[pos] != '\n' && data[pos] != '\r') {
+                pos++;
+            }
+            return new String(data, start, pos - start, StandardCharsets.US_ASCII).trim();
+        }
+
+        void skipToEnd() {
+            pos = data.length;
+        }
+
+        //skips a section that ends with -1
+        void skipSection() throws IOException {
+            while (skipWhitespace()) {
+                if (nextInt() == -1) {
+                    return;
+                }
+            }
+        }
+
+        void requireDimension(int numCities, String section) throws IOException {
+            if (numCities < 1) {
+                throw error(section + " before DIMENSION");
+            }
+        }
+
+        //reads "id x y" lines into the arrays, placing each city by its id
+        void readCoordinates(double[] xs, double[] ys) throws IOException {
+            for (int i = 0; i < xs.length; i++) {
+                int id = nextInt();
+                if (id < 1 || id > xs.length) {
+                    throw error("City number " + id + " out of range 1.." + xs.length);
+                }
+                xs[id - 1] = nextDouble();
+                ys[id - 1] = nextDouble();
+            }
+        }
+
+        //reads an EDGE_WEIGHT_SECTION into a full symmetric matrix
+        float[] readWeights(int numCities, String format) throws IOException {
+            float[] lengths = new float[numCities * numCities];
+            switch (format) {
+                case "FULL_MATRIX":
+                    for (int i = 0; i < lengths.length; i++) {
+                        lengths[i] = nextWeight();
+                    }
+                    return lengths;
+                //a symmetric matrix listed by columns is the other triangle by rows
+                case "UPPER_ROW":
+                case "LOWER_COL":
+                    readTriangle(lengths, numCities, true, false);
+                    return lengths;
+                case "LOWER_ROW":
+                case "UPPER_COL":
+                    readTriangle(lengths, numCities, false, false);
+                    return lengths;
+                case "UPPER_DIAG_ROW":
+                case "LOWER_DIAG_COL":
+                    readTriangle(lengths, numCities, true, true);
+                    return lengths;
+                case "LOWER_DIAG_ROW":
+                case "UPPER_DIAG_COL":
+                    readTriangle(lengths, numCities, false, true);
+                    return lengths;
+                default:
+                    throw error("Unsupported EDGE_WEIGHT_FORMAT: " + format);
+            }
+        }
+
+        //reads one triangle of the matrix by rows and mirrors it
+        private void readTriangle(float[] lengths, int numCities, boolean upper, boolean diagonal)
+                throws IOException {
+            for (int i = 0; i < numCities; i++) {
+                int from = upper ? (diagonal ? i : i + 1) : 0;
+                int to = upper ? numCities : (diagonal ? i + 1 : i);
+                for (int j = from; j < to; j++) {
+                    float length = nextWeight();
+                    lengths[i * numCities + j] = length;
+                    lengths[j * numCities + i] = length;
+                }
+            }
+        }
+
+        //reads one EXPLICIT weight. The matrix is kept in floats, which hold the
+        //whole-number weights TSPLIB defines exactly up to 2^24; a weight they
+        //would round is refused rather than changed
+        float nextWeight() throws IOException {
+            double value = nextDouble();
+            float weight = (float) value;
+            if (weight != value) {
+                throw error("Edge weight " + value + " cannot be stored exactly as a float");
+            }
+            return weight;
+        }
+
+        int nextInt() throws IOException {
+            double value = nextDouble();
+            if (value != Math.rint(value)) {
+                throw error("Expected a whole number, found " + value);
+            }
+            return (int) value;
+        }
+
+        //parses the next number. Plain decimals with up to 18 digits (which is
+        //every TSPLIB file we have) are parsed in place and rounded exactly like
+        //Double.parseDouble; anything else falls back to it.
+        double nextDouble() throws IOException {
+            if (!skipWhitespace()) {
+                throw error("Unexpected end of file");
+            }
+            int start = pos;
+
+            boolean negative = false;
+            if (data[pos] == '-' || data[pos] == '+') {
+                negative = data[pos] == '-';
+                pos++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            boolean inFraction = false;
+            int exponent = 0;
+            boolean simple = true;
+
+            while (pos < data.length && data[pos] > ' ') {
+                byte b = data[pos];
+                if (b >= '0' && b <= '9') {
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (mantissa != 0) {
+                            digits++;
+                        }
+                        if (inFraction) {
+                            fractionDigits++;
+                        }
+                    } else {
+                        simple = false;
+                    }
+                } else if (b == '.' && !inFraction) {
+                    inFraction = true;
+                } else if (b == 'e' || b == 'E') {
+                    pos++;
+                    exponent = readExponent();
+                    break;
+                } else {
+                    throw error("Bad number " + new String(data, start, Math.min(pos + 1, data.length) - start,
+                            StandardCharsets.US_ASCII));
+                }
+                pos++;
+            }
+            if (pos == start || (pos == start + 1 && (data[start] == '-' || data[start] == '+'))) {
+                throw error("Expected a number");
+            }
+
+            int scale = exponent - fractionDigits;
+            if (simple && mantissa < (1L << 53) && scale >= -22 && scale <= 22) {
+                double value = scale < 0 ? mantissa / POW10[-scale] : mantissa * POW10[scale];
+                return negative ? -value : value;
+            }
+            return Double.parseDouble(new String(data, start, pos - start, StandardCharsets.US_ASCII));
+        }
+
+        //reads the digits after an 'e'
+        private int readExponent() throws IOException {
+            boolean negative = false;
+            if (pos < data.length && (data[pos] == '-' || data[pos] == '+')) {
+                negative = data[pos] == '-';
+                pos++;
+            }
+            int exponent = 0;
+            int start = pos;
+            while (pos < data.length && data[pos] >= '0' && data[pos] <= '9') {
+                exponent = Math.min(exponent * 10 + (data[pos] - '0'), 10000);
+                pos++;
+            }
+            if (pos == start || (pos < data.length && data[pos] > ' ')) {
+                throw error("Bad exponent");
+            }
+            return negative ? -exponent : exponent;
+        }
+
+        //an IOException that says where in the file things went wrong
+        IOException error(String message) {
+            int line = 1;
+            for (int i = 0; i < pos && i < data.length; i++) {
+                if (data[i] == '\n') {
+                    line++;
+                }
+            }
+            return new IOException(fileName + ", line " + line + ": " + message);
+        }
+    }
+
+}
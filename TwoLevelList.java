@@ -0,0 +1,378 @@
+/*
+ * A tour stored as a two-level list: the cities are cut into blocks of about
+ * sqrt(n) cities, and the blocks are chained into a doubly linked cycle. Each
+ * block has a reversed bit, so reversing a path only has to split the blocks at
+ * its two ends, flip the bits of the blocks in between and relink them, which
+ * costs O(sqrt(n)) instead of the O(n) of reversing part of an array. Small
+ * blocks left over from splits are merged with their neighbours.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class TwoLevelList {
+
+    private final int numCities;
+    private final int groupSize;
+
+    //block of every city and its slot in the block's array
+    private final int[] blockOf;
+    private final int[] slot;
+
+    //cities of every block; a reversed block is read from the back
+    private final int[][] items;
+    private final int[] size;
+    private final boolean[] reversed;
+    private final int[] nextBlock;
+    private final int[] prevBlock;
+    //order of the blocks along the tour, counted from head
+    private final int[] rank;
+    private int head;
+    private int numBlocks;
+
+    //blocks not in use
+    private final int[] freeBlocks;
+    private int numFree;
+
+    //creates an empty list for numCities cities; call build() before using it
+    public TwoLevelList(int numCities) {
+        this.numCities = numCities;
+        this.groupSize = Math.max(8, (int) Math.sqrt(numCities));
+        blockOf = new int[numCities];
+        slot = new int[numCities];
+
+        //every block holds at least one city, so there are never more than n
+        items = new int[numCities][];
+        size = new int[numCities];
+        reversed = new boolean[numCities];
+        nextBlock = new int[numCities];
+        prevBlock = new int[numCities];
+        rank = new int[numCities];
+        freeBlocks = new int[numCities];
+    }
+
+    //loads a tour (n cities, the closing city is ignored)
+    public void build(int[] tour) {
+        numFree = 0;
+        for (int block = numCities - 1; block >= 0; block--) {
+            freeBlocks[numFree++] = block;
+        }
+        numBlocks = 0;
+
+        int previous = -1;
+        for (int start = 0; start < numCities; start += groupSize) {
+            int block = allocBlock();
+            int count = Math.min(groupSize, numCities - start);
+            for (int i = 0; i < count; i++) {
+                int city = tour[start + i];
+                items[block][i] = city;
+                blockOf[city] = block;
+                slot[city] = i;
+            }
+            size[block] = count;
+            reversed[block] = false;
+
+            if (previous < 0) {
+                head = block;
+            } else {
+                nextBlock[previous] = block;
+                prevBlock[block] = previous;
+            }
+            previous = block;
+        }
+        nextBlock[previous] = head;
+        prevBlock[head] = previous;
+        renumber();
+    }
+
+    //writes the tour out starting at its first block, closing city included
+    public void toArray(int[] tour) {
+        int index = 0;
+        int block = head;
+        do {
+            for (int i = 0; i < size[block]; i++) {
+                tour[index++] = at(block, i);
+            }
+            block = nextBlock[block];
+        } while (block != head);
+        tour[numCities] = tour[0];
+    }
+
+    //city after city in the tour
+    public int next(int city) {
+        int block = blockOf[city];
+        int i = logical(city);
+        if (i + 1 < size[block]) {
+            return at(block, i + 1);
+        }
+        return at(nextBlock[block], 0);
+    }
+
+    //city before city in the tour
+    public int prev(int city) {
+        int block = blockOf[city];
+        int i = logical(city);
+        if (i > 0) {
+            return at(block, i - 1);
+        }
+        int before = prevBlock[block];
+        return at(before, size[before] - 1);
+    }
+
+    //true if going forward from a reaches b no later than c
+    public boolean between(int a, int b, int c) {
+        long sa = sequence(a);
+        long sb = sequence(b);
+        long sc = sequence(c);
+        if (sa <= sc) {
+            return sa <= sb && sb <= sc;
+        }
+        return sb >= sa || sb <= sc;
+    }
+
+    /**
+     * Reverses the path that starts at a and goes forward to b. The rest of
+     * the tour is reversed instead when it is shorter, which gives the same
+     * cycle, so callers must not assume which way round the tour runs after.
+     */
+    public void reverse(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        if (2 * pathLength(a, b) > numCities) {
+            int newA = next(b);
+            b = prev(a);
+            a = newA;
+            if (a == next(b) || a == b) {
+                //the path was the whole tour, or all but one city of it
+                return;
+            }
+        }
+
+        int block = blockOf[a];
+        if (block == blockOf[b] && logical(a) <= logical(b)) {
+            reverseInBlock(block, logical(a), logical(b));
+            return;
+        }
+
+        splitBefore(a);
+        splitAfter(b);
+        int first = blockOf[a];
+        int last = blockOf[b];
+        int before = prevBlock[first];
+        int after = nextBlock[last];
+
+        //flip every block of the path and chain them the other way round
+        int current = first;
+        while (true) {
+            int following = nextBlock[current];
+            reversed[current] = !reversed[current];
+            nextBlock[current] = prevBlock[current];
+            prevBlock[current] = following;
+            if (current == last) {
+                break;
+            }
+            current = following;
+        }
+        nextBlock[before] = last;
+        prevBlock[last] = before;
+        nextBlock[first] = after;
+        prevBlock[after] = first;
+
+        //tidy up the pieces the splits left at both ends
+        mergeIfSmall(before);
+        mergeIfSmall(prevBlock[after]);
+        if (numBlocks > 3 * (numCities / groupSize + 1)) {
+            rebalance();
+        } else {
+            renumber();
+        }
+    }
+
+    //number of cities going forward from a to b, both included
+    private int pathLength(int a, int b) {
+        int blockA = blockOf[a];
+        int blockB = blockOf[b];
+        if (blockA == blockB && logical(a) <= logical(b)) {
+            return logical(b) - logical(a) + 1;
+        }
+        int length = size[blockA] - logical(a) + logical(b) + 1;
+        for (int block = nextBlock[blockA]; block != blockB; block = nextBlock[block]) {
+            length += size[block];
+        }
+        return length;
+    }
+
+    //reverses the cities at logical positions from to to of block
+    private void reverseInBlock(int block, int from, int to) {
+        int[] cities = items[block];
+        int rawFrom = raw(block, from);
+        int rawTo = raw(block, to);
+        if (rawFrom > rawTo) {
+            int swap = rawFrom;
+            rawFrom = rawTo;
+            rawTo = swap;
+        }
+        while (rawFrom < rawTo) {
+            int cityFrom = cities[rawFrom];
+            int cityTo = cities[rawTo];
+            cities[rawFrom] = cityTo;
+            slot[cityTo] = rawFrom;
+            cities[rawTo] = cityFrom;
+            slot[cityFrom] = rawTo;
+            rawFrom++;
+            rawTo--;
+        }
+    }
+
+    //makes city the first city of its block
+    private void splitBefore(int city) {
+        int i = logical(city);
+        if (i > 0) {
+            split(blockOf[city], i);
+        }
+    }
+
+    //makes city the last city of its block
+    private void splitAfter(int city) {
+        int block = blockOf[city];
+        int i = logical(city);
+        if (i + 1 < size[block]) {
+            split(block, i + 1);
+        }
+    }
+
+    //moves the cities from logical position at onward into a new block that
+    //follows block in the chain
+    private void split(int block, int at) {
+        int created = allocBlock();
+        int[] cities = items[block];
+        int[] moved = items[created];
+        int kept = at;
+        int count = size[block] - at;
+
+        if (reversed[block]) {
+            //the moved cities are the front of the array; the kept ones slide down
+            System.arraycopy(cities, 0, moved, 0, count);
+            System.arraycopy(cities, count, cities, 0, kept);
+            for (int i = 0; i < kept; i++) {
+                slot[cities[i]] = i;
+            }
+        } else {
+            System.arraycopy(cities, at, moved, 0, count);
+        }
+        for (int i = 0; i < count; i++) {
+            blockOf[moved[i]] = created;
+            slot[moved[i]] = i;
+        }
+        size[block] = kept;
+        size[created] = count;
+        reversed[created] = reversed[block];
+
+        int after = nextBlock[block];
+        nextBlock[block] = created;
+        prevBlock[created] = block;
+        nextBlock[created] = after;
+        prevBlock[after] = created;
+    }
+
+    //merges block with the one after it if both fit in one block
+    private void mergeIfSmall(int block) {
+        int after = nextBlock[block];
+        if (after == block || size[block] + size[after] > groupSize) {
+            return;
+        }
+
+        //put block's own cities in forward order, then append the others
+        if (reversed[block]) {
+            int[] cities = items[block];
+            for (int i = 0, j = size[block] - 1; i < j; i++, j--) {
+                int swap = cities[i];
+                cities[i] = cities[j];
+                cities[j] = swap;
+            }
+            for (int i = 0; i < size[block]; i++) {
+                slot[cities[i]] = i;
+            }
+            reversed[block] = false;
+        }
+        for (int i = 0; i < size[after]; i++) {
+            int city = at(after, i);
+            int index = size[block] + i;
+            items[block][index] = city;
+            blockOf[city] = block;
+            slot[city] = index;
+        }
+        size[block] += size[after];
+
+        int following = nextBlock[after];
+        nextBlock[block] = following;
+        prevBlock[following] = block;
+        if (head == after) {
+            head = block;
+        }
+        freeBlock(after);
+    }
+
+    //rebuilds evenly sized blocks once splits have left too many small ones
+    private void rebalance() {
+        int[] tour = new int[numCities + 1];
+        toArray(tour);
+        build(tour);
+    }
+
+    //numbers the blocks along the chain starting at head
+    private void renumber() {
+        int block = head;
+        int order = 0;
+        do {
+            rank[block] = order++;
+            block = nextBlock[block];
+        } while (block != head);
+    }
+
+    //takes a block off the free list
+    private int allocBlock() {
+        int block = freeBlocks[--numFree];
+        if (items[block] == null) {
+            items[block] = new int[groupSize];
+        }
+        numBlocks++;
+        return block;
+    }
+
+    //puts a block back on the free list
+    private void freeBlock(int block) {
+        freeBlocks[numFree++] = block;
+        numBlocks--;
+    }
+
+    //position of city along the tour, for comparisons only
+    private long sequence(int city) {
+        return ((long) rank[blockOf[city]] << 32) | logical(city);
+    }
+
+    //index of city within its block, counted in tour order
+    private int logical(int city) {
+        int block = blockOf[city];
+        return reversed[block] ? size[block] - 1 - slot[city] : slot[city];
+    }
+
+    //array index of the city at logical position i of block
+    private int raw(int block, int i) {
+        return reversed[block] ? size[block] - 1 - i : i;
+    }
+
+    //city at logical position i of block
+    private int at(int block, int i) {
+        return items[block][raw(block, i)];
+    }
+
+    //getter for number of cities
+    public int getNumCities() {
+        return numCities;
+    }
+
+}
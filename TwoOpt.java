@@ -0,0 +1,195 @@
+/*
+ * 2-opt local search over the nearest neighbour lists. A move takes out two
+ * edges of the tour and reconnects the two paths the other way round, which
+ * means reversing one of them. Only moves that bring one of the endpoints to a
+ * candidate neighbour are tried, and the search stops looking down a list as
+ * soon as the new edge is no shorter than the one it replaces (no move further
+ * down can gain). Don't-look bits keep the search on the cities around recent
+ * changes: a city is only looked at again after a move touches one of its
+ * tour neighbours. A call can be given a time budget, after which it returns
+ * the tour as it is.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class TwoOpt implements LocalSearch {
+
+    //gains smaller than this are rounding noise, not improvements
+    private static final double EPSILON = 1e-9;
+
+    //how many cities are looked at between checks of the clock
+    private static final int CLOCK_INTERVAL = 64;
+
+    private final int numCities;
+    private final DistanceMatrix distances;
+    private final CandidateLists candidates;
+    private final long budgetNanos;
+
+    //the tour being improved and where each city sits in it
+    private int[] tour;
+    private final int[] position;
+
+    //cities waiting to be looked at, as a ring buffer; a city that is not in
+    //the queue has its don't-look bit set
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head;
+    private int count;
+
+    //creates an improver for problem that stops after budgetNanos (0 for no
+    //limit); it needs the problem's candidate lists
+    public TwoOpt(Problem problem, long budgetNanos) {
+        this.numCities = problem.getNumCities();
+        this.distances = problem.getDistances();
+        this.candidates = problem.getCandidates();
+        if (candidates == null) {
+            throw new IllegalArgumentException("2-opt needs candidate lists");
+        }
+        this.budgetNanos = budgetNanos;
+        position = new int[numCities];
+        queue = new int[numCities];
+        queued = new boolean[numCities];
+    }
+
+    //improves tour in place and returns its new length
+    public double improve(int[] tour, double length) {
+        if (numCities < 4) {
+            return length;
+        }
+        long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        this.tour = tour;
+        head = 0;
+        count = 0;
+        for (int i = 0; i < numCities; i++) {
+            position[tour[i]] = i;
+            queued[tour[i]] = false;
+        }
+        for (int i = 0; i < numCities; i++) {
+            push(tour[i]);
+        }
+
+        int sinceClock = 0;
+        while (count > 0) {
+            if (++sinceClock == CLOCK_INTERVAL) {
+                sinceClock = 0;
+                if (System.nanoTime() > deadline) {
+                    break;
+                }
+            }
+
+            int city = pop();
+            //a move puts city back in the queue, so it is looked at again
+            //until it runs out of moves
+            length -= improveCity(city);
+        }
+
+        tour[numCities] = tour[0];
+        this.tour = null;
+        return length;
+    }
+
+    //tries the moves that give city a candidate as its new successor or
+    //predecessor, applies the first one that shortens the tour and returns
+    //its gain (0 if there is none)
+    private double improveCity(int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            boolean forward = direction == 0;
+            int b = forward ? next(a) : prev(a);
+            double removed = distances.get(a, b);
+
+            for (int rank = 0; rank < candidates.size(); rank++) {
+                int c = candidates.get(a, rank);
+                double added = distances.get(a, c);
+                //the lists are sorted, so nothing further down can gain either
+                if (added >= removed) {
+                    break;
+                }
+                int d = forward ? next(c) : prev(c);
+                if (c == b || d == a) {
+                    continue;
+                }
+
+                double gain = removed - added + distances.get(c, d) - distances.get(b, d);
+                if (gain > EPSILON) {
+                    //a-b and c-d become a-c and b-d
+                    if (forward) {
+                        reverse(position[b], position[c]);
+                    } else {
+                        reverse(position[a], position[d]);
+                    }
+                    push(a);
+                    push(b);
+                    push(c);
+                    push(d);
+                    return gain;
+                }
+            }
+        }
+        return 0;
+    }
+
+    //reverses the part of the tour from position from to position to
+    //(inclusive, wrapping around). Reversing the rest of the tour instead gives
+    //the same cycle, so the shorter of the two is reversed.
+    private void reverse(int from, int to) {
+        int inside = to - from;
+        if (inside < 0) {
+            inside += numCities;
+        }
+        inside++;
+        if (2 * inside > numCities) {
+            int newFrom = to + 1;
+            int newTo = from - 1;
+            from = newFrom == numCities ? 0 : newFrom;
+            to = newTo < 0 ? numCities - 1 : newTo;
+            inside = numCities - inside;
+        }
+
+        for (int swaps = inside / 2; swaps > 0; swaps--) {
+            int cityFrom = tour[from];
+            int cityTo = tour[to];
+            tour[from] = cityTo;
+            position[cityTo] = from;
+            tour[to] = cityFrom;
+            position[cityFrom] = to;
+
+            from = from + 1 == numCities ? 0 : from + 1;
+            to = to == 0 ? numCities - 1 : to - 1;
+        }
+    }
+
+    //city after city in the tour
+    private int next(int city) {
+        int pos = position[city] + 1;
+        return tour[pos == numCities ? 0 : pos];
+    }
+
+    //city before city in the tour
+    private int prev(int city) {
+        int pos = position[city];
+        return tour[pos == 0 ? numCities - 1 : pos - 1];
+    }
+
+    //clears the don't-look bit of city
+    private void push(int city) {
+        if (!queued[city]) {
+            queued[city] = true;
+            int tail = head + count;
+            queue[tail >= numCities ? tail - numCities : tail] = city;
+            count++;
+        }
+    }
+
+    //takes the next city to look at and sets its don't-look bit
+    private int pop() {
+        int city = queue[head];
+        head = head + 1 == numCities ? 0 : head + 1;
+        count--;
+        queued[city] = false;
+        return city;
+    }
+
+}
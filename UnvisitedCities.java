@@ -0,0 +1,68 @@
+/*
+ * The set of cities an ant has not visited yet. Cities are kept in a plain int
+ * array with the unvisited ones at the front, and a second array remembers
+ * where each city sits, so checking and removing are O(1) and nothing is boxed
+ * or shifted. Resetting rewrites both arrays, which is O(n) but no more than
+ * the tour the ant is about to walk.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class UnvisitedCities {
+
+    private final int[] cities;
+    private final int[] position;
+    private int size;
+
+    //creates a set holding every city
+    public UnvisitedCities(int numCities) {
+        cities = new int[numCities];
+        position = new int[numCities];
+        for (int city = 0; city < numCities; city++) {
+            cities[city] = city;
+            position[city] = city;
+        }
+        size = numCities;
+    }
+
+    //puts every city back into the set, in order. Leaving the order the last
+    //tour left behind would be enough for the set, but the order cities are
+    //looked at in decides roulette draws, and a seeded iteration has to come
+    //out the same whatever the ant did before it (a resumed run relies on it)
+    public void reset() {
+        for (int city = 0; city < cities.length; city++) {
+            cities[city] = city;
+            position[city] = city;
+        }
+        size = cities.length;
+    }
+
+    //true if the ant still has to visit city
+    public boolean contains(int city) {
+        return position[city] < size;
+    }
+
+    //takes city out of the set by swapping it with the last unvisited city
+    public void remove(int city) {
+        int index = position[city];
+        int last = cities[--size];
+        cities[index] = last;
+        position[last] = index;
+        cities[size] = city;
+        position[city] = size;
+    }
+
+    //returns the index-th unvisited city (any order)
+    public int get(int index) {
+        return cities[index];
+    }
+
+    //number of cities still to visit
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * One colony of a distributed run: steps its Solver in this process and,
+ * every interval iterations, sends its best tour to the Coordinator if it has
+ * improved and takes in the best tour the coordinator passed on since. Tours
+ * from the coordinator arrive on a reader thread and wait in a one-tour
+ * mailbox, as in IslandModel, so the colony never waits on the network.
+ *
+ * If the coordinator cannot be reached, or goes away during the run, the
+ * worker carries on alone and still returns its own best tour.
+ *
+ *   java aco.Worker <host:port> <file.tsp> <ACS|EAS> <seed> [seconds] [interval] [ants]
+ *
+ * runs a colony with the rule of thumb parameters until the time is up.
+ */
+package aco;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public class Worker {
+
+    private static final int DEFAULT_ANTS = 20;
+    private static final int DEFAULT_INTERVAL = 10;
+    private static final double DEFAULT_SECONDS = 60;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final Solver solver;
+    private final InetSocketAddress coordinator;
+    private final int interval;
+    private final IslandModel.Update update;
+    private final int numCities;
+
+    private Socket socket;
+    private DataOutputStream out;
+    //the shortest tour from the coordinator not taken in yet
+    private final AtomicReference<TourWire.Tour> mailbox = new AtomicReference<TourWire.Tour>();
+    private volatile boolean stopRequested;
+    private volatile boolean connected;
+    private volatile boolean finished;
+    private double lastSent = Double.MAX_VALUE;
+
+    /**
+     * A worker running solver, talking to the coordinator at the given address
+     * every interval iterations; received tours are taken in as update says.
+     */
+    public Worker(Solver solver, InetSocketAddress coordinator, int interval, IslandModel.Update update) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Exchange interval must be at least 1: " + interval);
+        }
+        this.solver = solver;
+        this.coordinator = coordinator;
+        this.interval = interval;
+        this.update = update;
+        this.numCities = solver.getProblem().getNumCities();
+    }
+
+    //runs the colony until it stops or the coordinator says so, closes it and
+    //returns its best tour length
+    public double solve() {
+        connect();
+        try {
+            while (!stopRequested && solver.step()) {
+                if (solver.getIterationsRun() % interval == 0) {
+                    receive();
+                    send();
+                }
+            }
+            send();
+            //from here on the coordinator hanging up is expected
+            finished = true;
+            done();
+        } finally {
+            finished = true;
+            solver.close();
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    //done with it anyway
+                }
+            }
+        }
+        return solver.getBestTourLength();
+    }
+
+    //connects and says hello; on failure the colony runs alone
+    private void connect() {
+        try {
+            socket = new Socket();
+            socket.connect(coordinator, CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            TourWire.writeHello(out, numCities);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            connected = true;
+
+            Thread reader = new Thread(() -> read(in), "worker-reader");
+            reader.setDaemon(true);
+            reader.start();
+        } catch (IOException e) {
+            disconnect(e);
+        }
+    }
+
+    //takes in the coordinator's messages until the connection ends
+    private void read(DataInputStream in) {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                if (type == TourWire.TOUR) {
+                    TourWire.Tour tour = TourWire.readTour(in, numCities);
+                    //keep whichever waiting tour is shorter
+                    mailbox.accumulateAndGet(tour,
+                            (waiting, arrived) -> waiting != null && waiting.getLength() <= arrived.getLength()
+                                    ? waiting : arrived);
+                } else if (type == TourWire.STOP) {
+                    stopRequested = true;
+                    return;
+                } else {
+                    throw new IOException("Unknown message " + type);
+                }
+            }
+        } catch (IOException e) {
+            disconnect(e);
+        }
+    }
+
+    //sends the best tour if it improved since it was last sent
+    private void send() {
+        double length = solver.getBestTourLength();
+        if (!connected || length >= lastSent || solver.getBestTour() == null) {
+            return;
+        }
+        try {
+            TourWire.writeTour(out, solver.getIterationsRun(), length, solver.getBestTour());
+            lastSent = length;
+        } catch (IOException e) {
+            disconnect(e);
+        }
+    }
+
+    //tells the coordinator the run is over, and whether it reached its target
+    private void done() {
+        if (!connected) {
+            return;
+        }
+        Termination.Reason reason = solver.getStopReason();
+        try {
+            TourWire.writeDone(out, reason == Termination.Reason.OPTIMUM
+                    || reason == Termination.Reason.TARGET_LENGTH);
+        } catch (IOException e) {
+            disconnect(e);
+        }
+    }
+
+    //takes in the tour waiting in the mailbox, if any
+    private void receive() {
+        TourWire.Tour tour = mailbox.getAndSet(null);
+        if (tour != null && solver.receiveTour(tour.getCities(), update)) {
+            //no need to send back what came from the coordinator
+            lastSent = Math.min(lastSent, solver.getBestTourLength());
+        }
+    }
+
+    //carries on alone after the coordinator went away (or was never there);
+    //says so once, unless the run is over anyway
+    private void disconnect(IOException cause) {
+        boolean wasConnected = connected;
+        connected = false;
+        if (!finished && (wasConnected || !socket.isConnected())) {
+            System.err.println("Worker running alone, coordinator " + coordinator + " unreachable: " + cause);
+        }
+    }
+
+    //true while the worker is talking to the coordinator
+    public boolean isConnected() {
+        return connected;
+    }
+
+    //runs one worker process
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("usage: java aco.Worker <host:port> <file.tsp> <ACS|EAS> <seed> [seconds]"
+                    + " [interval] [ants]");
+            return;
+        }
+        String[] hostPort = args[0].split(":");
+        InetSocketAddress address = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+        double seconds = args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_SECONDS;
+        int interval = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_INTERVAL;
+        int numAnts = args.length > 6 ? Integer.parseInt(args[6]) : DEFAULT_ANTS;
+
+        ColonyOptions options = new ColonyOptions().setSeed(Long.parseLong(args[3]))
+                .setTimeLimitMillis((long) (seconds * 1000));
+        Problem problem = Problem.load(args[1], options);
+        Solver solver = args[2].equals("ACS")
+                ? new ACS(problem, numAnts, Integer.MAX_VALUE, 1, 3.5, 0.1, 0.9, 0.1, 1, 0, options)
+                : new EAS(problem, numAnts, Integer.MAX_VALUE, 1, 3.5, 0.1, 20, 1, 0, options);
+
+        double length = new Worker(solver, address, interval, IslandModel.Update.DEPOSIT_IF_BETTER).solve();
+        System.out.println("Best tour length " + length + " after " + solver.getIterationsRun() + " iterations");
+    }
+
+}
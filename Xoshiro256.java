@@ -0,0 +1,72 @@
+/*
+ * xoshiro256** generator (Blackman and Vigna). Four longs of state, a handful of
+ * shifts and xors per number, and no synchronization, which makes it a good
+ * fit for one generator per ant. Seeds are spread over the state with
+ * SplitMix64 as the authors recommend.
+ */
+package aco;
+
+/**
+ *
+ * @author PryhuberA
+ */
+public final class Xoshiro256 implements RandomSource {
+
+    static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    //creates a generator started from seed
+    public Xoshiro256(long seed) {
+        setSeed(seed);
+    }
+
+    //restarts the sequence from seed
+    public void setSeed(long seed) {
+        long z = seed;
+        s0 = splitMix(z += GOLDEN_GAMMA);
+        s1 = splitMix(z += GOLDEN_GAMMA);
+        s2 = splitMix(z += GOLDEN_GAMMA);
+        s3 = splitMix(z + GOLDEN_GAMMA);
+    }
+
+    //returns the next 64 random bits
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+
+        return result;
+    }
+
+    //returns a double in [0, 1) built from the top 53 bits
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    //returns an int in [0, bound) by scaling the top 32 bits (the bias is below
+    //bound / 2^32, far under anything the colonies could notice)
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    //SplitMix64 finalizer, used to turn one seed into well mixed state
+    static long splitMix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * The Kernels sum and maximum search written with the Vector API, four
+ * 256 bit vectors (sixteen doubles) at a time; scaling and multiplying are
+ * inherited from the scalar loops, which the JIT vectorizes on its own. This
+ * class needs jdk.incubator.vector both to compile and to run, which is why it
+ * sits in its own directory (see Kernels for the commands). Kernels only
+ * loads it by name, so the rest of the code builds and runs without it. The
+ * vector width is fixed rather than the machine's preferred size so that sums
+ * come out the same as the scalar code's everywhere.
+ */
+package aco;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ *
+ * @author PryhuberA
+ */
+final class VectorKernels extends Kernels.Scalar {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_256;
+    private static final int WIDTH = 4;
+    private static final int STRIDE = Kernels.PARTIAL_SUMS;
+
+    //refuses to load where 256 bit vectors would only be emulated
+    VectorKernels() {
+        if (SPECIES.length() != WIDTH || DoubleVector.SPECIES_PREFERRED.length() < WIDTH) {
+            throw new UnsupportedOperationException("No 256 bit vector unit");
+        }
+    }
+
+    @Override
+    public double sum(double[] a, int from, int to) {
+        DoubleVector s0 = DoubleVector.zero(SPECIES);
+        DoubleVector s1 = s0;
+        DoubleVector s2 = s0;
+        DoubleVector s3 = s0;
+        int i = from;
+        for (int bound = to - STRIDE; i <= bound; i += STRIDE) {
+            s0 = s0.add(DoubleVector.fromArray(SPECIES, a, i));
+            s1 = s1.add(DoubleVector.fromArray(SPECIES, a, i + WIDTH));
+            s2 = s2.add(DoubleVector.fromArray(SPECIES, a, i + 2 * WIDTH));
+            s3 = s3.add(DoubleVector.fromArray(SPECIES, a, i + 3 * WIDTH));
+        }
+
+        //lane by lane, left to right, the same order as the scalar code;
+        //reduceLanes would be quicker but its order is unspecified
+        double total = addLanes(addLanes(addLanes(addLanes(0.0, s0), s1), s2), s3);
+        for (; i < to; i++) {
+            total += a[i];
+        }
+        return total;
+    }
+
+    //total plus the lanes of partial, first lane first
+    private static double addLanes(double total, DoubleVector partial) {
+        for (int lane = 0; lane < WIDTH; lane++) {
+            total += partial.lane(lane);
+        }
+        return total;
+    }
+
+    @Override
+    public int argMax(double[] a, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+
+        //first find the largest value; max does not care about order
+        DoubleVector m0 = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        DoubleVector m1 = m0;
+        DoubleVector m2 = m0;
+        DoubleVector m3 = m0;
+        int i = from;
+        for (int bound = to - STRIDE; i <= bound; i += STRIDE) {
+            m0 = m0.max(DoubleVector.fromArray(SPECIES, a, i));
+            m1 = m1.max(DoubleVector.fromArray(SPECIES, a, i + WIDTH));
+            m2 = m2.max(DoubleVector.fromArray(SPECIES, a, i + 2 * WIDTH));
+            m3 = m3.max(DoubleVector.fromArray(SPECIES, a, i + 3 * WIDTH));
+        }
+        double max = m0.max(m1).max(m2.max(m3)).reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) {
+            max = Math.max(max, a[i]);
+        }
+
+        //then skip the blocks it is not in and look for it one by one
+        i = from;
+        for (int bound = to - STRIDE; i <= bound; i += STRIDE) {
+            VectorMask<Double> found = DoubleVector.fromArray(SPECIES, a, i).eq(max)
+                    .or(DoubleVector.fromArray(SPECIES, a, i + WIDTH).eq(max))
+                    .or(DoubleVector.fromArray(SPECIES, a, i + 2 * WIDTH).eq(max))
+                    .or(DoubleVector.fromArray(SPECIES, a, i + 3 * WIDTH).eq(max));
+            if (found.anyTrue()) {
+                break;
+            }
+        }
+        for (; i < to; i++) {
+            if (a[i] == max) {
+                return i;
+            }
+        }
+        return from;
+    }
+
+    @Override
+    public String getName() {
+        return "vector";
+    }
+
+}